@@ -0,0 +1,34 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItem;
+
+import java.util.List;
+
+/**
+ * Хранилище корзин по идентификатору корзины (cookie CART_ID)
+ *
+ * Корзина не живет в HTTP-сессии: приложение можно запускать в нескольких
+ * экземплярах без липких сессий, а при хранении в БД корзины переживают перезапуск.
+ * Позиции индексированы по bookId и возвращаются в порядке добавления.
+ */
+public interface CartStore {
+
+    /**
+     * Позиции корзины в порядке добавления (копии, изменение не влияет на хранилище)
+     */
+    List<CartItem> getItems(String cartId);
+
+    /**
+     * Добавляет позицию; если книга уже в корзине, увеличивает количество
+     */
+    void add(String cartId, CartItem item);
+
+    void remove(String cartId, Long bookId);
+
+    /**
+     * Новое количество; ноль и меньше удаляют позицию
+     */
+    void updateQuantity(String cartId, Long bookId, int quantity);
+
+    void clear(String cartId);
+}
@@ -0,0 +1,102 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItem;
+import com.example.bookstore.util.LruTtlCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Корзины в памяти приложения: LinkedHashMap bookId → позиция на каждую корзину
+ *
+ * Число корзин ограничено, брошенные корзины вытесняются по LRU и времени жизни,
+ * которое отсчитывается от последнего обращения к корзине.
+ * Подходит для одного экземпляра приложения; корзины теряются при перезапуске.
+ */
+public class InMemoryCartStore implements CartStore {
+
+    private final LruTtlCache<String, Map<Long, CartItem>> carts;
+
+    public InMemoryCartStore(int maxCarts, long ttl, TimeUnit unit) {
+        this(maxCarts, ttl, unit, System::nanoTime);
+    }
+
+    InMemoryCartStore(int maxCarts, long ttl, TimeUnit unit, LongSupplier clock) {
+        this.carts = new LruTtlCache<>(maxCarts, ttl, unit, true, clock);
+    }
+
+    @Override
+    public List<CartItem> getItems(String cartId) {
+        Map<Long, CartItem> cart = carts.get(cartId);
+        if (cart == null) {
+            return List.of();
+        }
+        synchronized (cart) {
+            List<CartItem> items = new ArrayList<>(cart.size());
+            for (CartItem item : cart.values()) {
+                items.add(copy(item));
+            }
+            return items;
+        }
+    }
+
+    @Override
+    public void add(String cartId, CartItem item) {
+        Map<Long, CartItem> cart = carts.getOrLoad(cartId, id -> new LinkedHashMap<>());
+        synchronized (cart) {
+            CartItem existing = cart.get(item.getBookId());
+            if (existing != null) {
+                existing.setQuantity(existing.getQuantity() + item.getQuantity());
+            } else {
+                cart.put(item.getBookId(), copy(item));
+            }
+        }
+    }
+
+    @Override
+    public void remove(String cartId, Long bookId) {
+        Map<Long, CartItem> cart = carts.get(cartId);
+        if (cart != null) {
+            synchronized (cart) {
+                cart.remove(bookId);
+            }
+        }
+    }
+
+    @Override
+    public void updateQuantity(String cartId, Long bookId, int quantity) {
+        Map<Long, CartItem> cart = carts.get(cartId);
+        if (cart == null) {
+            return;
+        }
+        synchronized (cart) {
+            if (quantity <= 0) {
+                cart.remove(bookId);
+                return;
+            }
+            CartItem item = cart.get(bookId);
+            if (item != null) {
+                item.setQuantity(quantity);
+            }
+        }
+    }
+
+    @Override
+    public void clear(String cartId) {
+        carts.invalidate(cartId);
+    }
+
+    private static CartItem copy(CartItem item) {
+        return CartItem.builder()
+                .bookId(item.getBookId())
+                .title(item.getTitle())
+                .author(item.getAuthor())
+                .price(item.getPrice())
+                .quantity(item.getQuantity())
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItem;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Корзины в таблице cart_item (V15): общие для всех экземпляров приложения
+ *
+ * Цена фиксируется при добавлении, название и автор берутся из book при чтении.
+ * Удаление книги удаляет ее из корзин (ON DELETE CASCADE).
+ * Корзины, которые не менялись дольше ttl, удаляются фоновой очисткой раз в purge-interval.
+ */
+public class JdbcCartStore implements CartStore {
+
+    // Позиции корзины удаляются вместе: только если ни одна из них не менялась после cutoff.
+    // Порциями, чтобы не держать блокировки на всей таблице
+    private static final String PURGE_SQL = """
+            DELETE FROM cart_item
+            WHERE (cart_id, book_id) IN (
+                SELECT c.cart_id, c.book_id
+                FROM cart_item c
+                WHERE c.updated_at < ?
+                  AND NOT EXISTS (SELECT 1 FROM cart_item n WHERE n.cart_id = c.cart_id AND n.updated_at >= ?)
+                LIMIT ?
+            )
+            """;
+
+    private static final int PURGE_BATCH = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final ScheduledExecutorService scheduler;
+
+    public JdbcCartStore(JdbcTemplate jdbcTemplate, Duration ttl, Duration purgeInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cart-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                purgeExpired();
+            } catch (Exception e) {
+                System.err.println("Ошибка очистки корзин: " + e.getMessage());
+            }
+        }, purgeInterval.toMillis(), purgeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Удаляет брошенные корзины
+     *
+     * @return число удаленных позиций
+     */
+    public int purgeExpired() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(ttl));
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(PURGE_SQL, cutoff, cutoff, PURGE_BATCH);
+            total += deleted;
+        } while (deleted == PURGE_BATCH);
+
+        if (total > 0) {
+            System.out.println("Удалено позиций брошенных корзин: " + total);
+        }
+        return total;
+    }
+
+    @Override
+    public List<CartItem> getItems(String cartId) {
+        String sql = """
+            SELECT c.book_id, b.title, b.author, c.price, c.quantity
+            FROM cart_item c
+            JOIN book b ON b.id = c.book_id
+            WHERE c.cart_id = ?
+            ORDER BY c.added_at, c.book_id
+            """;
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> CartItem.builder()
+                .bookId(rs.getLong("book_id"))
+                .title(rs.getString("title"))
+                .author(rs.getString("author"))
+                .price(rs.getBigDecimal("price"))
+                .quantity(rs.getInt("quantity"))
+                .build(), cartId);
+    }
+
+    @Override
+    public void add(String cartId, CartItem item) {
+        // Одним запросом: новая позиция или увеличение количества существующей
+        String sql = """
+            INSERT INTO cart_item (cart_id, book_id, quantity, price, added_at, updated_at)
+            VALUES (?, ?, ?, ?, now(), now())
+            ON CONFLICT (cart_id, book_id)
+            DO UPDATE SET quantity = cart_item.quantity + EXCLUDED.quantity, updated_at = now()
+            """;
+        jdbcTemplate.update(sql, cartId, item.getBookId(), item.getQuantity(), item.getPrice());
+    }
+
+    @Override
+    public void remove(String cartId, Long bookId) {
+        jdbcTemplate.update("DELETE FROM cart_item WHERE cart_id = ? AND book_id = ?", cartId, bookId);
+    }
+
+    @Override
+    public void updateQuantity(String cartId, Long bookId, int quantity) {
+        if (quantity <= 0) {
+            remove(cartId, bookId);
+            return;
+        }
+        jdbcTemplate.update(
+                "UPDATE cart_item SET quantity = ?, updated_at = now() WHERE cart_id = ? AND book_id = ?",
+                quantity, cartId, bookId);
+    }
+
+    @Override
+    public void clear(String cartId) {
+        jdbcTemplate.update("DELETE FROM cart_item WHERE cart_id = ?", cartId);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.bookstore.config;
+
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.cart.InMemoryCartStore;
+import com.example.bookstore.cart.JdbcCartStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выбор хранилища корзин
+ *
+ * bookstore.cart.store:
+ * - memory (по умолчанию) → корзины в памяти приложения, один экземпляр
+ * - jdbc → таблица cart_item, корзины общие для всех экземпляров и переживают перезапуск
+ *
+ * Корзина без изменений (в памяти — без обращений) дольше ttl удаляется;
+ * по умолчанию ttl равен сроку жизни cookie CART_ID.
+ */
+@Configuration
+public class CartStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "memory", matchIfMissing = true)
+    public CartStore inMemoryCartStore(
+            @Value("${bookstore.cart.memory.max-carts:100000}") int maxCarts,
+            @Value("${bookstore.cart.memory.ttl:30d}") Duration ttl) {
+        System.out.println("✅ Корзины: в памяти (до " + maxCarts + " корзин)");
+        return new InMemoryCartStore(maxCarts, ttl.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "bookstore.cart.store", havingValue = "jdbc")
+    public CartStore jdbcCartStore(JdbcTemplate jdbcTemplate,
+                                   @Value("${bookstore.cart.jdbc.ttl:30d}") Duration ttl,
+                                   @Value("${bookstore.cart.jdbc.purge-interval:1h}") Duration purgeInterval) {
+        System.out.println("✅ Корзины: в БД (cart_item, очистка брошенных раз в " + purgeInterval.toMinutes() + " мин)");
+        return new JdbcCartStore(jdbcTemplate, ttl, purgeInterval);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.bookstore.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Пакетная запись JPA
+ *
+ * Вставки одной сущности группируются в JDBC batch (order_inserts),
+ * например все позиции заказа сохраняются одним пакетом.
+ * Для IDENTITY-ключей Hibernate пакеты не использует, поэтому OrderItem
+ * получает id из последовательности блоками.
+ */
+@Configuration
+public class JpaBatchConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(
+            @Value("${bookstore.jpa.batch-size:50}") int batchSize) {
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", batchSize);
+            properties.putIfAbsent("hibernate.order_inserts", true);
+            properties.putIfAbsent("hibernate.order_updates", true);
+        };
+    }
+}
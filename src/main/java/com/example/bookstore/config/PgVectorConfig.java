@@ -0,0 +1,101 @@
+package com.example.bookstore.config;
+
+import com.example.bookstore.util.PgVector;
+import org.postgresql.core.Oid;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.core.TypeInfo;
+import org.postgresql.jdbc.PgConnection;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Регистрация типа vector в драйвере PostgreSQL
+ *
+ * DataSource оборачивается так, что на каждом физическом соединении один раз
+ * выполняется addDataType("vector", PgVector.class) и включается бинарная передача
+ * для OID типа vector (он назначается при CREATE EXTENSION, поэтому задать его
+ * через binaryTransferEnable в настройках подключения нельзя).
+ * Параметры PgVector отправляются в бинарном виде сразу, результаты приходят
+ * в бинарном виде, когда драйвер готовит запрос на сервере (prepareThreshold).
+ *
+ * QueryExecutor и TypeInfo — внутренний API pgjdbc без гарантий совместимости:
+ * код проверен на драйвере 42.6, PgVectorDriverVersionTest падает при смене версии.
+ */
+@Configuration
+public class PgVectorConfig {
+
+    private static final String TYPE_NAME = "vector";
+
+    @Bean
+    public static BeanPostProcessor pgVectorDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PgVectorDataSource)) {
+                    return new PgVectorDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Регистрирует PgVector на соединении, если это соединение PostgreSQL и расширение установлено
+     *
+     * @return true, если тип зарегистрирован (сейчас или раньше)
+     */
+    public static boolean register(Connection connection) throws SQLException {
+        if (!connection.isWrapperFor(PgConnection.class)) {
+            return false;
+        }
+        PgConnection pgConnection = connection.unwrap(PgConnection.class);
+        TypeInfo typeInfo = pgConnection.getTypeInfo();
+        if (typeInfo.getPGobject(TYPE_NAME) == PgVector.class) {
+            return true;
+        }
+
+        // До миграции с CREATE EXTENSION (первое соединение Flyway) типа еще нет
+        int oid = typeInfo.getPGType(TYPE_NAME);
+        if (oid == Oid.UNSPECIFIED) {
+            return false;
+        }
+        pgConnection.addDataType(TYPE_NAME, PgVector.class);
+        QueryExecutor executor = pgConnection.getQueryExecutor();
+        executor.addBinarySendOid(oid);
+        executor.addBinaryReceiveOid(oid);
+        return true;
+    }
+
+    static class PgVectorDataSource extends DelegatingDataSource {
+
+        PgVectorDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return registered(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return registered(super.getConnection(username, password));
+        }
+
+        private static Connection registered(Connection connection) throws SQLException {
+            try {
+                register(connection);
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        }
+    }
+}
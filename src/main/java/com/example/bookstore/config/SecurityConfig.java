@@ -1,6 +1,9 @@
 package com.example.bookstore.config;
 
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.controller.CartController;
 import com.example.bookstore.service.CustomUserDetailsService;
+import jakarta.servlet.http.Cookie;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -9,14 +12,20 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.web.util.WebUtils;
+
+import java.util.UUID;
 
 @Configuration
 public class SecurityConfig {
 
     private final CustomUserDetailsService userDetailsService;
+    private final CartStore cartStore;
 
-    public SecurityConfig(CustomUserDetailsService userDetailsService) {
+    public SecurityConfig(CustomUserDetailsService userDetailsService, CartStore cartStore) {
         this.userDetailsService = userDetailsService;
+        this.cartStore = cartStore;
     }
 
     @Bean
@@ -35,13 +44,31 @@ public class SecurityConfig {
                         .failureUrl("/login?error=true")
                         .permitAll()
                 )
+                // Корзина привязана к браузеру, а не к пользователю: при выходе она очищается,
+                // чтобы следующий пользователь того же браузера ее не увидел
                 .logout(logout -> logout
+                        .addLogoutHandler(clearCart())
+                        .deleteCookies(CartController.CART_COOKIE)
                         .logoutSuccessUrl("/books")
                         .permitAll()
                 );
         return http.build();
     }
 
+    private LogoutHandler clearCart() {
+        return (request, response, authentication) -> {
+            Cookie cookie = WebUtils.getCookie(request, CartController.CART_COOKIE);
+            if (cookie == null) {
+                return;
+            }
+            try {
+                cartStore.clear(UUID.fromString(cookie.getValue()).toString());
+            } catch (IllegalArgumentException e) {
+                // Подделанный идентификатор — корзины с ним нет
+            }
+        };
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -0,0 +1,83 @@
+package com.example.bookstore.config;
+
+import com.example.bookstore.service.BookEmbeddingStore;
+import com.example.bookstore.vector.FlatVectorStore;
+import com.example.bookstore.vector.HnswVectorIndex;
+import com.example.bookstore.vector.ProductQuantizer;
+import com.example.bookstore.vector.QuantizedVectorIndex;
+import com.example.bookstore.vector.ScalarQuantizer;
+import com.example.bookstore.vector.VectorIndex;
+import com.example.bookstore.vector.VectorQuantizer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Выбор бэкенда векторного поиска
+ *
+ * bookstore.vector.backend:
+ * - postgres (по умолчанию) → kNN-запросы выполняет pgvector
+ * - in-memory → HNSW-граф в памяти приложения, загружается из book_embedding при старте
+ * - flat → точный перебор матрицы векторов в памяти (полнота 100%, для каталогов до ~500 тыс. книг)
+ * - quantized → перебор сжатых кодов (int8 или PQ) с точным переранжированием по book_embedding
+ *
+ * in-memory и flat держат float32-векторы вне кучи: 500 тыс. × 1536 × 4 байта ≈ 3 ГБ,
+ * -XX:MaxDirectMemorySize должен это вмещать (по умолчанию он равен -Xmx).
+ */
+@Configuration
+public class VectorIndexConfig {
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "bookstore.vector.backend", havingValue = "in-memory")
+    public VectorIndex hnswVectorIndex(
+            @Value("${bookstore.vector.dimension:1536}") int dimension,
+            @Value("${bookstore.vector.hnsw.m:16}") int m,
+            @Value("${bookstore.vector.hnsw.ef-construction:64}") int efConstruction,
+            @Value("${bookstore.vector.hnsw.ef-search:64}") int efSearch) {
+        System.out.println("✅ Векторный поиск: HNSW в памяти (m=" + m + ", ef_search=" + efSearch + ")");
+        return new HnswVectorIndex(dimension, m, efConstruction, efSearch);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "bookstore.vector.backend", havingValue = "flat")
+    public VectorIndex flatVectorStore(
+            @Value("${bookstore.vector.dimension:1536}") int dimension,
+            @Value("${bookstore.vector.flat.parallel-threshold:16384}") int parallelThreshold) {
+        System.out.println("✅ Векторный поиск: точный перебор в памяти (параллельно от "
+                + parallelThreshold + " векторов)");
+        return new FlatVectorStore(dimension, parallelThreshold);
+    }
+
+    /**
+     * bookstore.vector.quantization.type: int8 (в 4 раза меньше float32) или pq (subspaces байт на вектор)
+     * training-sample: сколько векторов накопить до обучения (не меньше 256); до этого поиск точный
+     * rerank-factor: сколько кандидатов на каждый из k результатов перепроверяется точно
+     */
+    @Bean
+    @ConditionalOnProperty(name = "bookstore.vector.backend", havingValue = "quantized")
+    public VectorIndex quantizedVectorIndex(
+            @Value("${bookstore.vector.dimension:1536}") int dimension,
+            @Value("${bookstore.vector.quantization.type:int8}") String type,
+            @Value("${bookstore.vector.quantization.training-sample:20000}") int trainingSample,
+            @Value("${bookstore.vector.quantization.rerank-factor:4}") int rerankFactor,
+            @Value("${bookstore.vector.quantization.pq.subspaces:96}") int subspaces,
+            @Value("${bookstore.vector.quantization.pq.iterations:10}") int iterations,
+            // Ленивый доступ: BookEmbeddingStore сам зависит от VectorIndex
+            ObjectProvider<BookEmbeddingStore> embeddingStore) {
+        Function<List<float[]>, VectorQuantizer> trainer = switch (type) {
+            case "int8" -> sample -> ScalarQuantizer.train(sample, dimension);
+            case "pq" -> sample -> ProductQuantizer.train(sample, dimension, subspaces, iterations, 42L);
+            default -> throw new IllegalArgumentException("Неизвестный тип квантования: " + type);
+        };
+
+        System.out.println("✅ Векторный поиск: квантование " + type + " в памяти (переранжирование x"
+                + rerankFactor + ")");
+        return new QuantizedVectorIndex(dimension, trainer, trainingSample, rerankFactor,
+                ids -> embeddingStore.getObject().findAll(ids));
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.bookstore.controller;
 
+import com.example.bookstore.dto.BookSummary;
 import com.example.bookstore.model.Book;
 import com.example.bookstore.service.BookService;
 import com.example.bookstore.service.FileStorageService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -18,14 +21,20 @@ public class AdminController {
     private final BookService bookService;
     private final FileStorageService fileStorageService;
 
+    private static final int ADMIN_PAGE_SIZE = 50;
+    private static final String CONCURRENT_EDIT_ERROR =
+            "Книга была изменена другим пользователем. Обновите страницу и повторите правку";
+
     public AdminController(BookService bookService, FileStorageService fileStorageService) {
         this.bookService = bookService;
         this.fileStorageService = fileStorageService;
     }
 
     @GetMapping("/books")
-    public String listBooks(Model model) {
-        model.addAttribute("books", bookService.findAll());
+    public String listBooks(@RequestParam(defaultValue = "0") int page, Model model) {
+        Page<BookSummary> books = bookService.findPage(page, ADMIN_PAGE_SIZE);
+        model.addAttribute("books", books.getContent());
+        model.addAttribute("page", books);
         return "admin/book-list";
     }
 
@@ -60,6 +69,8 @@ public class AdminController {
             @RequestParam String isbn,
             @RequestParam BigDecimal price,
             @RequestParam Integer stock,
+            @RequestParam(required = false) Long version,
+            @RequestParam(required = false) Integer originalStock,
             @RequestParam(required = false) MultipartFile image,
             RedirectAttributes redirectAttributes
     ) {
@@ -74,6 +85,11 @@ public class AdminController {
                     redirectAttributes.addFlashAttribute("error", "Книга не найдена");
                     return "redirect:/admin";
                 }
+                // Форма открыта на устаревшей версии — не перезаписываем чужую правку
+                if (version != null && !version.equals(book.getVersion())) {
+                    redirectAttributes.addFlashAttribute("error", CONCURRENT_EDIT_ERROR);
+                    return "redirect:/admin/books/edit/" + id;
+                }
                 oldImagePath = book.getImagePath();
             } else {
                 // Создание новой книги
@@ -87,7 +103,12 @@ public class AdminController {
             book.setDescription(description);
             book.setIsbn(isbn);
             book.setPrice(price);
-            book.setStock(stock);
+            if (id != null) {
+                // Версия из формы: если книгу успели изменить, сохранение завершится OptimisticLockingFailureException
+                book.setVersion(version != null ? version : book.getVersion());
+            } else {
+                book.setStock(stock);
+            }
 
             // Обработка изображения
             if (image != null && !image.isEmpty()) {
@@ -100,12 +121,19 @@ public class AdminController {
                 book.setImagePath(imagePath);
             }
 
-            bookService.save(book);
+            // Остаток меняем на разницу с показанным в форме значением:
+            // заказы, оформленные пока форма была открыта, не теряются.
+            // Правка книги и остатка сохраняются одной транзакцией
+            int stockDelta = id != null && originalStock != null ? stock - originalStock : 0;
+            bookService.save(book, stockDelta);
 
             redirectAttributes.addFlashAttribute("success",
                     id != null ? "Книга успешно обновлена" : "Книга успешно добавлена");
             return "redirect:/admin";
 
+        } catch (OptimisticLockingFailureException e) {
+            redirectAttributes.addFlashAttribute("error", CONCURRENT_EDIT_ERROR);
+            return "redirect:/admin/books/edit/" + id;
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", "Ошибка: " + e.getMessage());
             return "redirect:/admin/books/" + (id != null ? "edit/" + id : "new");
@@ -4,6 +4,7 @@ import com.example.bookstore.service.BookService;
 import com.example.bookstore.service.BookRecommendationService;
 import com.example.bookstore.service.AISearchService;
 import com.example.bookstore.model.Book;
+import com.example.bookstore.dto.BookSummary;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -20,6 +21,8 @@ public class BookController {
     private final BookRecommendationService recommendationService;
     private final AISearchService aiSearchService;
 
+    private static final int CATALOG_PAGE_SIZE = 24;
+
     public BookController(BookService service,
                           BookRecommendationService recommendationService,
                           AISearchService aiSearchService) {
@@ -32,6 +35,7 @@ public class BookController {
     public String list(
             @RequestParam(required = false) String q,
             @RequestParam(required = false) String mode,
+            @RequestParam(required = false) Long after,
             Model model
     ) {
         List<Book> books;
@@ -43,14 +47,9 @@ public class BookController {
             model.addAttribute("searchMode", "ai");
             model.addAttribute("searchQuery", q);
 
-            // Добавляем объяснения для каждой найденной книги
+            // Объяснения генерируются параллельно, с общим сроком ожидания
             if (!books.isEmpty()) {
-                Map<Long, String> explanations = new HashMap<>();
-                for (Book book : books) {
-                    String explanation = aiSearchService.explainMatch(q, book);
-                    explanations.put(book.getId(), explanation);
-                }
-                model.addAttribute("explanations", explanations);
+                model.addAttribute("explanations", aiSearchService.explainMatches(q, books));
             }
         } else if (q != null && !q.isBlank()) {
             // Обычный поиск
@@ -58,9 +57,17 @@ public class BookController {
             model.addAttribute("searchMode", "standard");
             model.addAttribute("searchQuery", q);
         } else {
-            // Показываем весь каталог
-            books = service.findAll();
+            // Каталог порциями по id: стоимость страницы не зависит от размера каталога
+            List<BookSummary> page = service.findPageAfter(after != null ? after : 0, CATALOG_PAGE_SIZE + 1);
+            boolean hasMore = page.size() > CATALOG_PAGE_SIZE;
+            if (hasMore) {
+                page = page.subList(0, CATALOG_PAGE_SIZE);
+            }
             model.addAttribute("searchMode", "none");
+            model.addAttribute("books", page);
+            model.addAttribute("resultCount", page.size());
+            model.addAttribute("nextAfter", hasMore ? page.get(page.size() - 1).getId() : null);
+            return "books";
         }
 
         model.addAttribute("books", books);
@@ -1,18 +1,25 @@
 package com.example.bookstore.controller;
 
-import com.example.bookstore.model.Book;
+import com.example.bookstore.dto.BookAvailability;
+import com.example.bookstore.dto.CartLine;
 import com.example.bookstore.model.Order;
 import com.example.bookstore.model.User;
 import com.example.bookstore.service.BookService;
 import com.example.bookstore.service.CartService;
 import com.example.bookstore.service.OrderService;
 import com.example.bookstore.service.UserService;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
 @Controller
 @RequestMapping("/cart")
 public class CartController {
@@ -21,6 +28,9 @@ public class CartController {
     private final OrderService orderService;
     private final UserService userService;
 
+    public static final String CART_COOKIE = "CART_ID";
+    private static final int CART_COOKIE_MAX_AGE = (int) Duration.ofDays(30).toSeconds();
+
     public CartController(CartService cartService, BookService bookService,
                           OrderService orderService, UserService userService) {
         this.cartService = cartService;
@@ -30,17 +40,19 @@ public class CartController {
     }
 
     @GetMapping
-    public String viewCart(Model model) {
-        model.addAttribute("items", cartService.getItems());
-        model.addAttribute("total", cartService.getTotal());
+    public String viewCart(@CookieValue(name = CART_COOKIE, required = false) String cartId, Model model) {
+        List<CartLine> lines = cartService.getLines(validCartId(cartId));
+        addCartAttributes(model, lines);
         return "cart";
     }
 
     @PostMapping("/add/{bookId}")
     public String addToCart(@PathVariable Long bookId,
                             @RequestParam(defaultValue = "1") Integer quantity,
+                            @CookieValue(name = CART_COOKIE, required = false) String cartId,
+                            HttpServletResponse response,
                             RedirectAttributes redirectAttributes) {
-        Book book = bookService.findById(bookId);
+        BookAvailability book = bookService.findAvailability(bookId);
         if (book == null) {
             redirectAttributes.addFlashAttribute("error", "Книга не найдена");
             return "redirect:/books";
@@ -51,37 +63,40 @@ public class CartController {
             return "redirect:/books/" + bookId;
         }
 
-        cartService.addItem(book, quantity);
+        cartService.addItem(ensureCartId(cartId, response), book, quantity);
         redirectAttributes.addFlashAttribute("success", "Товар добавлен в корзину");
         return "redirect:/books/" + bookId;
     }
 
     @PostMapping("/remove/{bookId}")
-    public String removeFromCart(@PathVariable Long bookId) {
-        cartService.removeItem(bookId);
+    public String removeFromCart(@PathVariable Long bookId,
+                                 @CookieValue(name = CART_COOKIE, required = false) String cartId) {
+        cartService.removeItem(validCartId(cartId), bookId);
         return "redirect:/cart";
     }
 
     @PostMapping("/update/{bookId}")
     public String updateQuantity(@PathVariable Long bookId,
-                                 @RequestParam Integer quantity) {
-        cartService.updateQuantity(bookId, quantity);
+                                 @RequestParam Integer quantity,
+                                 @CookieValue(name = CART_COOKIE, required = false) String cartId) {
+        cartService.updateQuantity(validCartId(cartId), bookId, quantity);
         return "redirect:/cart";
     }
 
     @GetMapping("/checkout")
-    public String checkoutForm(Model model, Authentication authentication) {
+    public String checkoutForm(@CookieValue(name = CART_COOKIE, required = false) String cartId,
+                               Model model, Authentication authentication) {
         if (authentication == null) {
             return "redirect:/login";
         }
 
-        if (cartService.isEmpty()) {
+        List<CartLine> lines = cartService.getLines(validCartId(cartId));
+        if (lines.isEmpty()) {
             return "redirect:/cart";
         }
 
         User user = userService.findByUsername(authentication.getName());
-        model.addAttribute("items", cartService.getItems());
-        model.addAttribute("total", cartService.getTotal());
+        addCartAttributes(model, lines);
         model.addAttribute("user", user);
         return "checkout";
     }
@@ -90,23 +105,25 @@ public class CartController {
     public String processCheckout(@RequestParam String deliveryAddress,
                                   @RequestParam String phone,
                                   @RequestParam String email,
+                                  @CookieValue(name = CART_COOKIE, required = false) String cartId,
                                   Authentication authentication,
                                   RedirectAttributes redirectAttributes) {
         if (authentication == null) {
             return "redirect:/login";
         }
 
+        String validId = validCartId(cartId);
         try {
             User user = userService.findByUsername(authentication.getName());
             Order order = orderService.createOrder(
                     user,
-                    cartService.getItems(),
+                    cartService.getItems(validId),
                     deliveryAddress,
                     phone,
                     email
             );
 
-            cartService.clear();
+            cartService.clear(validId);
             redirectAttributes.addFlashAttribute("success",
                     "Заказ №" + order.getId() + " успешно оформлен!");
             return "redirect:/orders";
@@ -115,4 +132,41 @@ public class CartController {
             return "redirect:/cart/checkout";
         }
     }
-}
\ No newline at end of file
+
+    private static void addCartAttributes(Model model, List<CartLine> lines) {
+        model.addAttribute("items", lines);
+        model.addAttribute("total", CartService.getTotal(lines));
+        model.addAttribute("hasUnavailable", CartService.hasUnavailable(lines));
+        model.addAttribute("hasPriceChanges", lines.stream().anyMatch(CartLine::isPriceChanged));
+    }
+
+    /**
+     * Идентификатор корзины из cookie; новый, если cookie нет или оно подделано
+     */
+    private static String ensureCartId(String cartId, HttpServletResponse response) {
+        String valid = validCartId(cartId);
+        if (valid != null) {
+            return valid;
+        }
+
+        String created = UUID.randomUUID().toString();
+        Cookie cookie = new Cookie(CART_COOKIE, created);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge(CART_COOKIE_MAX_AGE);
+        cookie.setAttribute("SameSite", "Lax");
+        response.addCookie(cookie);
+        return created;
+    }
+
+    private static String validCartId(String cartId) {
+        if (cartId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(cartId).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
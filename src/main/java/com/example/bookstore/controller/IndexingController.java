@@ -1,5 +1,10 @@
 package com.example.bookstore.controller;
 
+import com.example.bookstore.model.IndexingJob;
+import com.example.bookstore.service.BookNeighborRefresher;
+import com.example.bookstore.service.EmbeddingSchema;
+import com.example.bookstore.service.IndexingJobService;
+import com.example.bookstore.service.QueryEmbeddingCache;
 import com.example.bookstore.service.VectorSearchService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -19,9 +24,21 @@ import java.util.Map;
 public class IndexingController {
 
     private final VectorSearchService vectorSearchService;
+    private final IndexingJobService indexingJobService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final EmbeddingSchema embeddingSchema;
+    private final BookNeighborRefresher neighborRefresher;
 
-    public IndexingController(VectorSearchService vectorSearchService) {
+    public IndexingController(VectorSearchService vectorSearchService,
+                              IndexingJobService indexingJobService,
+                              QueryEmbeddingCache queryEmbeddingCache,
+                              EmbeddingSchema embeddingSchema,
+                              BookNeighborRefresher neighborRefresher) {
         this.vectorSearchService = vectorSearchService;
+        this.indexingJobService = indexingJobService;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.embeddingSchema = embeddingSchema;
+        this.neighborRefresher = neighborRefresher;
     }
 
     /**
@@ -40,28 +57,7 @@ public class IndexingController {
     @PostMapping("/api/index")
     @ResponseBody
     public ResponseEntity<Map<String, String>> indexBooks() {
-        try {
-            // Запускаем индексацию в отдельном потоке
-            new Thread(() -> {
-                try {
-                    vectorSearchService.indexAllBooks();
-                } catch (Exception e) {
-                    System.err.println("Ошибка индексации: " + e.getMessage());
-                }
-            }).start();
-
-            Map<String, String> response = new HashMap<>();
-            response.put("status", "started");
-            response.put("message", "Индексация запущена в фоновом режиме");
-
-            return ResponseEntity.ok(response);
-
-        } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("status", "error");
-            error.put("message", e.getMessage());
-            return ResponseEntity.internalServerError().body(error);
-        }
+        return startJob(IndexingJob.JobType.INDEX_MISSING, "Индексация запущена в фоновом режиме");
     }
 
     /**
@@ -70,37 +66,128 @@ public class IndexingController {
     @PostMapping("/api/reindex")
     @ResponseBody
     public ResponseEntity<Map<String, String>> reindexAllBooks() {
-        try {
-            new Thread(() -> {
-                try {
-                    vectorSearchService.reindexAllBooks();
-                } catch (Exception e) {
-                    System.err.println("Ошибка переиндексации: " + e.getMessage());
-                }
-            }).start();
+        return startJob(IndexingJob.JobType.REINDEX_ALL, "Переиндексация запущена в фоновом режиме");
+    }
 
-            Map<String, String> response = new HashMap<>();
-            response.put("status", "started");
-            response.put("message", "Переиндексация запущена в фоновом режиме");
+    /**
+     * API: Продолжить приостановленную задачу
+     */
+    @PostMapping("/api/jobs/{type}/resume")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> resumeJob(@PathVariable IndexingJob.JobType type) {
+        return startJob(type, "Задача продолжена");
+    }
 
-            return ResponseEntity.ok(response);
+    /**
+     * API: Приостановить задачу (прогресс сохраняется)
+     */
+    @PostMapping("/api/jobs/{type}/pause")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> pauseJob(@PathVariable IndexingJob.JobType type) {
+        boolean paused = indexingJobService.pause(type);
+        return ResponseEntity.ok(response(paused ? "pausing" : "not_running",
+                paused ? "Задача будет приостановлена после текущего пакета" : "Задача не выполняется"));
+    }
 
-        } catch (Exception e) {
-            Map<String, String> error = new HashMap<>();
-            error.put("status", "error");
-            error.put("message", e.getMessage());
-            return ResponseEntity.internalServerError().body(error);
-        }
+    /**
+     * API: Отменить задачу
+     */
+    @PostMapping("/api/jobs/{type}/cancel")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> cancelJob(@PathVariable IndexingJob.JobType type) {
+        boolean cancelled = indexingJobService.cancel(type);
+        return ResponseEntity.ok(response(cancelled ? "cancelling" : "not_running",
+                cancelled ? "Задача отменяется" : "Нет активной задачи"));
     }
 
     /**
-     * API: Получить статистику индексации
+     * API: Получить статистику индексации и прогресс задач
      */
     @GetMapping("/api/stats")
     @ResponseBody
-    public ResponseEntity<Map<String, String>> getStats() {
-        Map<String, String> stats = new HashMap<>();
+    public ResponseEntity<Map<String, Object>> getStats() {
+        Map<String, Object> stats = new HashMap<>();
         stats.put("stats", vectorSearchService.getIndexingStats());
+        stats.put("jobs", indexingJobService.getProgress());
+        stats.put("queryEmbeddingCache", queryEmbeddingCache.getStats());
         return ResponseEntity.ok(stats);
     }
-}
\ No newline at end of file
+
+    /**
+     * API: Тип столбца эмбеддингов в БД и по настройкам
+     */
+    @GetMapping("/api/schema")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getSchema() {
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("configured", embeddingSchema.getColumnType());
+        schema.put("current", embeddingSchema.getCurrentColumnType());
+        schema.put("upToDate", embeddingSchema.isUpToDate());
+        schema.put("index", embeddingSchema.getIndexDefinition());
+        schema.put("rebuilding", embeddingSchema.isRebuilding());
+        return ResponseEntity.ok(schema);
+    }
+
+    /**
+     * API: Привести столбец эмбеддингов и HNSW-индекс к настройкам
+     * (выполняется синхронно, таблица book_embedding блокируется на время перестройки)
+     */
+    @PostMapping("/api/schema/migrate")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> migrateSchema() {
+        try {
+            if (!embeddingSchema.migrate()) {
+                return ResponseEntity.ok(response("up_to_date", "Схема уже соответствует настройкам"));
+            }
+            // Индекс в памяти при старте пропустил векторы старой размерности
+            vectorSearchService.loadVectorIndex();
+            // Миграция сбросила все списки похожих книг
+            neighborRefresher.refreshMissing();
+            return ResponseEntity.ok(response("migrated", "Столбец приведен к типу " + embeddingSchema.getColumnType()));
+
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(response("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * API: Перестроить HNSW-индекс с новыми m и ef_construction
+     * (в фоне через CREATE INDEX CONCURRENTLY, поиск и запись не блокируются)
+     */
+    @PostMapping("/api/hnsw/rebuild")
+    @ResponseBody
+    public ResponseEntity<Map<String, String>> rebuildHnswIndex(@RequestParam int m,
+                                                                @RequestParam int efConstruction) {
+        try {
+            if (!embeddingSchema.rebuildIndex(m, efConstruction)) {
+                return ResponseEntity.ok(response("already_running", "Перестройка индекса уже выполняется"));
+            }
+            return ResponseEntity.ok(response("started", "Перестройка HNSW-индекса запущена (m=" + m
+                    + ", ef_construction=" + efConstruction + ")"));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(response("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(response("error", e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> startJob(IndexingJob.JobType type, String startedMessage) {
+        try {
+            if (!indexingJobService.start(type)) {
+                return ResponseEntity.ok(response("already_running", "Задача уже выполняется"));
+            }
+            return ResponseEntity.ok(response("started", startedMessage));
+
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(response("error", e.getMessage()));
+        }
+    }
+
+    private Map<String, String> response(String status, String message) {
+        Map<String, String> response = new HashMap<>();
+        response.put("status", status);
+        response.put("message", message);
+        return response;
+    }
+}
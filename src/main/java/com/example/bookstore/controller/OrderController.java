@@ -1,9 +1,12 @@
 package com.example.bookstore.controller;
 
+import com.example.bookstore.dto.OrderHistoryPage;
 import com.example.bookstore.model.Order;
 import com.example.bookstore.model.User;
 import com.example.bookstore.service.OrderService;
 import com.example.bookstore.service.UserService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -16,22 +19,45 @@ public class OrderController {
     private final OrderService orderService;
     private final UserService userService;
 
+    private static final int ORDERS_PAGE_SIZE = 20;
+    private static final int ORDERS_API_MAX_LIMIT = 100;
+
     public OrderController(OrderService orderService, UserService userService) {
         this.orderService = orderService;
         this.userService = userService;
     }
 
     @GetMapping
-    public String listOrders(Model model, Authentication authentication) {
+    public String listOrders(@RequestParam(required = false) String cursor,
+                             Model model, Authentication authentication) {
         if (authentication == null) {
             return "redirect:/login";
         }
 
         User user = userService.findByUsername(authentication.getName());
-        model.addAttribute("orders", orderService.getUserOrders(user));
+        OrderHistoryPage page = orderService.getUserOrders(user, cursor, ORDERS_PAGE_SIZE);
+        model.addAttribute("orders", page.getOrders());
+        model.addAttribute("nextCursor", page.getNextCursor());
         return "orders";
     }
 
+    /**
+     * Порция истории заказов в JSON для кнопки "Показать еще"
+     */
+    @GetMapping("/api")
+    @ResponseBody
+    public ResponseEntity<OrderHistoryPage> apiOrders(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "20") int limit,
+                                                      Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        User user = userService.findByUsername(authentication.getName());
+        int boundedLimit = Math.min(Math.max(limit, 1), ORDERS_API_MAX_LIMIT);
+        return ResponseEntity.ok(orderService.getUserOrders(user, cursor, boundedLimit));
+    }
+
     @GetMapping("/{id}")
     public String viewOrder(@PathVariable Long id, Model model, Authentication authentication) {
         if (authentication == null) {
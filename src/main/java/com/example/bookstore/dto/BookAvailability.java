@@ -0,0 +1,19 @@
+package com.example.bookstore.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Текущие цена и остаток книги для проверки корзины и оформления заказа
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookAvailability {
+    private Long id;
+    private String title;
+    private String author;
+    private BigDecimal price;
+    private Integer stock;
+}
@@ -0,0 +1,25 @@
+package com.example.bookstore.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Облегченное представление книги для списков каталога
+ * Не содержит эмбеддинга и полного описания
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BookSummary {
+    private Long id;
+    private String title;
+    private String author;
+    private String genre;
+    private BigDecimal price;
+    private Integer stock;
+    private String imagePath;
+    private String isbn;
+    private String shortDescription;  // Первые 100 символов описания
+}
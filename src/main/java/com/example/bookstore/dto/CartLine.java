@@ -0,0 +1,42 @@
+package com.example.bookstore.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Позиция корзины, сверенная с текущими ценой и остатком книги
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CartLine {
+    private Long bookId;
+    private String title;
+    private String author;
+    private Integer quantity;
+    private BigDecimal cartPrice;  // Цена на момент добавления в корзину
+    private BigDecimal price;      // Текущая цена (null, если книга удалена)
+    private Integer stock;         // Текущий остаток (null, если книга удалена)
+
+    public boolean isUnavailable() {
+        return price == null;
+    }
+
+    public boolean isPriceChanged() {
+        return price != null && cartPrice != null && price.compareTo(cartPrice) != 0;
+    }
+
+    public boolean isOutOfStock() {
+        return stock == null || stock < quantity;
+    }
+
+    /**
+     * Сумма по текущей цене — по ней будет оформлен заказ
+     */
+    public BigDecimal getSubtotal() {
+        BigDecimal unitPrice = price != null ? price : cartPrice;
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+}
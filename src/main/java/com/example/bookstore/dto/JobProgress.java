@@ -0,0 +1,27 @@
+package com.example.bookstore.dto;
+
+import com.example.bookstore.model.IndexingJob;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Снимок состояния задачи индексации для админ-панели
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobProgress {
+    private Long jobId;
+    private IndexingJob.JobType jobType;
+    private IndexingJob.JobStatus status;
+    private long processed;
+    private long failed;
+    private long total;
+    private long lastBookId;
+    private double booksPerSecond;
+    private Long etaSeconds;          // null, если скорость еще неизвестна
+    private String errorMessage;
+    private LocalDateTime updatedAt;
+}
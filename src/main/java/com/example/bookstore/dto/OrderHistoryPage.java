@@ -0,0 +1,16 @@
+package com.example.bookstore.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Порция истории заказов и курсор следующей порции (null — больше заказов нет)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderHistoryPage {
+    private List<OrderSummary> orders;
+    private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.example.bookstore.dto;
+
+import com.example.bookstore.model.Order;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Строка истории заказов: только поля заказа и число позиций
+ * Позиции и книги не загружаются
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderSummary {
+    private Long id;
+    private Order.OrderStatus status;
+    private LocalDateTime createdAt;
+    private BigDecimal totalAmount;
+    private String deliveryAddress;
+    private Integer itemCount;
+}
@@ -1,9 +1,7 @@
 package com.example.bookstore.model;
 
-import io.hypersistence.utils.hibernate.type.array.FloatArrayType;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.Type;
 
 import java.math.BigDecimal;
 
@@ -27,14 +25,16 @@ public class Book {
 
     private String isbn;
     private BigDecimal price;
+
+    // Остаток меняется только через InventoryService (атомарные UPDATE), сохранение сущности его не перезаписывает
+    @Column(updatable = false)
     private Integer stock;
 
-    private String imagePath;
+    // Оптимистическая блокировка для правок каталога
+    @Version
+    private Long version;
 
-    // Векторное представление для семантического поиска
-    @Type(FloatArrayType.class)
-    @Column(name = "embedding", columnDefinition = "vector(1536)")
-    private float[] embedding;
+    private String imagePath;
 
     /**
      * Получить текст для генерации эмбеддинга
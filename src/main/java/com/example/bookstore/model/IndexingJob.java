@@ -0,0 +1,74 @@
+package com.example.bookstore.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "indexing_job")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IndexingJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    @Builder.Default
+    private JobStatus status = JobStatus.RUNNING;
+
+    // Контрольная точка: все книги с id <= lastBookId уже обработаны
+    @Column(nullable = false)
+    @Builder.Default
+    private Long lastBookId = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long processed = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long failed = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long total = 0L;
+
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    private LocalDateTime finishedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+
+    public enum JobType {
+        INDEX_MISSING,  // Индексация книг без эмбеддингов
+        REINDEX_ALL     // Переиндексация всего каталога
+    }
+
+    public enum JobStatus {
+        RUNNING,    // Выполняется
+        PAUSED,     // На паузе, можно продолжить
+        COMPLETED,  // Завершена
+        CANCELLED,  // Отменена
+        FAILED      // Завершилась с ошибкой
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.bookstore.repository;
 
+import com.example.bookstore.dto.BookAvailability;
+import com.example.bookstore.dto.BookSummary;
 import com.example.bookstore.model.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,97 +20,49 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     List<Book> findByAuthorContainingIgnoreCase(String author);
 
     /**
-     * Векторный поиск похожих книг по косинусному сходству
-     * Возвращает топ-N наиболее похожих книг
+     * Страница каталога в виде проекции (без эмбеддинга и полного описания)
      */
     @Query(value = """
-        SELECT * FROM book 
-        WHERE embedding IS NOT NULL 
-        AND id != :excludeId
-        ORDER BY embedding <=> CAST(:queryVector AS vector)
-        LIMIT :limit
-        """, nativeQuery = true)
-    List<Book> findSimilarBooks(
-            @Param("queryVector") String queryVector,
-            @Param("excludeId") Long excludeId,
-            @Param("limit") int limit
-    );
+        SELECT new com.example.bookstore.dto.BookSummary(
+            b.id, b.title, b.author, b.genre, b.price, b.stock, b.imagePath, b.isbn,
+            SUBSTRING(b.description, 1, 100))
+        FROM Book b
+        """,
+            countQuery = "SELECT COUNT(b) FROM Book b")
+    Page<BookSummary> findSummaries(Pageable pageable);
 
     /**
-     * Векторный поиск похожих книг без исключений
+     * Keyset-пагинация каталога: книги с id больше afterId
+     * Стоимость не зависит от номера страницы (поиск по первичному ключу)
      */
-    @Query(value = """
-        SELECT * FROM book 
-        WHERE embedding IS NOT NULL
-        ORDER BY embedding <=> CAST(:queryVector AS vector)
-        LIMIT :limit
-        """, nativeQuery = true)
-    List<Book> findSimilarBooks(
-            @Param("queryVector") String queryVector,
-            @Param("limit") int limit
-    );
-
-    /**
-     * Векторный поиск с фильтром по жанру
-     */
-    @Query(value = """
-        SELECT * FROM book 
-        WHERE embedding IS NOT NULL
-        AND LOWER(genre) = LOWER(:genre)
-        ORDER BY embedding <=> CAST(:queryVector AS vector)
-        LIMIT :limit
-        """, nativeQuery = true)
-    List<Book> findSimilarBooksByGenre(
-            @Param("queryVector") String queryVector,
-            @Param("genre") String genre,
-            @Param("limit") int limit
-    );
+    @Query("""
+        SELECT new com.example.bookstore.dto.BookSummary(
+            b.id, b.title, b.author, b.genre, b.price, b.stock, b.imagePath, b.isbn,
+            SUBSTRING(b.description, 1, 100))
+        FROM Book b
+        WHERE b.id > :afterId
+        ORDER BY b.id
+        """)
+    List<BookSummary> findSummariesAfter(@Param("afterId") long afterId, Pageable pageable);
 
     /**
-     * Векторный поиск с фильтром по наличию на складе
+     * Книги в наличии того же жанра (запасные рекомендации)
      */
-    @Query(value = """
-        SELECT * FROM book 
-        WHERE embedding IS NOT NULL
-        AND stock > 0
-        ORDER BY embedding <=> CAST(:queryVector AS vector)
-        LIMIT :limit
-        """, nativeQuery = true)
-    List<Book> findSimilarBooksInStock(
-            @Param("queryVector") String queryVector,
-            @Param("limit") int limit
-    );
-
-    /**
-     * Гибридный поиск: комбинация векторного и текстового
-     * Сначала текстовый фильтр, затем сортировка по векторному сходству
-     */
-    @Query(value = """
-        SELECT * FROM book 
-        WHERE embedding IS NOT NULL
-        AND (
-            LOWER(title) LIKE LOWER(CONCAT('%', :keyword, '%'))
-            OR LOWER(author) LIKE LOWER(CONCAT('%', :keyword, '%'))
-            OR LOWER(description) LIKE LOWER(CONCAT('%', :keyword, '%'))
-        )
-        ORDER BY embedding <=> CAST(:queryVector AS vector)
-        LIMIT :limit
-        """, nativeQuery = true)
-    List<Book> hybridSearch(
-            @Param("queryVector") String queryVector,
-            @Param("keyword") String keyword,
-            @Param("limit") int limit
-    );
+    List<Book> findByGenreIgnoreCaseAndStockGreaterThanAndIdNotOrderByIdAsc(
+            String genre, int stock, Long excludeId, Pageable pageable);
 
     /**
-     * Получить все книги без эмбеддингов (для пакетной обработки)
+     * Книги в наличии, кроме указанных (запасные рекомендации)
      */
-    @Query("SELECT b FROM Book b WHERE b.embedding IS NULL")
-    List<Book> findBooksWithoutEmbeddings();
+    List<Book> findByStockGreaterThanAndIdNotInOrderByIdAsc(int stock, List<Long> excludeIds, Pageable pageable);
 
     /**
-     * Подсчет книг с эмбеддингами
+     * Текущие цена и остаток для набора книг одним запросом (корзина, оформление заказа)
      */
-    @Query("SELECT COUNT(b) FROM Book b WHERE b.embedding IS NOT NULL")
-    long countBooksWithEmbeddings();
-}
\ No newline at end of file
+    @Query("""
+        SELECT new com.example.bookstore.dto.BookAvailability(b.id, b.title, b.author, b.price, b.stock)
+        FROM Book b
+        WHERE b.id IN :ids
+        """)
+    List<BookAvailability> findAvailability(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,28 @@
+package com.example.bookstore.repository;
+
+import com.example.bookstore.model.Book;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Колонки и маппер книги для JDBC-запросов (без эмбеддинга)
+ */
+public final class BookRows {
+
+    public static final String COLUMNS =
+            "id, title, author, genre, description, isbn, price, stock, image_path";
+
+    public static final RowMapper<Book> MAPPER = (rs, rowNum) -> Book.builder()
+            .id(rs.getLong("id"))
+            .title(rs.getString("title"))
+            .author(rs.getString("author"))
+            .genre(rs.getString("genre"))
+            .description(rs.getString("description"))
+            .isbn(rs.getString("isbn"))
+            .price(rs.getBigDecimal("price"))
+            .stock(rs.getInt("stock"))
+            .imagePath(rs.getString("image_path"))
+            .build();
+
+    private BookRows() {
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.bookstore.repository;
+
+import com.example.bookstore.model.IndexingJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface IndexingJobRepository extends JpaRepository<IndexingJob, Long> {
+
+    Optional<IndexingJob> findFirstByJobTypeAndStatusIn(IndexingJob.JobType jobType,
+                                                        Collection<IndexingJob.JobStatus> statuses);
+
+    Optional<IndexingJob> findFirstByJobTypeOrderByCreatedAtDesc(IndexingJob.JobType jobType);
+
+    List<IndexingJob> findByStatus(IndexingJob.JobStatus status);
+
+    /**
+     * Сохранение контрольной точки без загрузки сущности
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        UPDATE IndexingJob j
+        SET j.lastBookId = :lastBookId, j.processed = :processed, j.failed = :failed, j.updatedAt = :updatedAt
+        WHERE j.id = :id
+        """)
+    void saveCheckpoint(@Param("id") Long id,
+                        @Param("lastBookId") Long lastBookId,
+                        @Param("processed") Long processed,
+                        @Param("failed") Long failed,
+                        @Param("updatedAt") LocalDateTime updatedAt);
+}
@@ -1,13 +1,54 @@
 package com.example.bookstore.repository;
 
+import com.example.bookstore.dto.OrderSummary;
 import com.example.bookstore.model.Order;
-import com.example.bookstore.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByUserOrderByCreatedAtDesc(User user);
-}
\ No newline at end of file
+
+    /**
+     * Первая порция истории заказов пользователя (без позиций и книг)
+     * Порядок совпадает с индексом idx_orders_user_created (V16)
+     */
+    @Query("""
+        SELECT new com.example.bookstore.dto.OrderSummary(
+            o.id, o.status, o.createdAt, o.totalAmount, o.deliveryAddress, SIZE(o.items))
+        FROM Order o
+        WHERE o.user.id = :userId
+        ORDER BY o.createdAt DESC, o.id DESC
+        """)
+    List<OrderSummary> findRecentSummaries(@Param("userId") Long userId, Pageable pageable);
+
+    /**
+     * Keyset-пагинация: заказы строго после курсора (created_at, id) в порядке убывания
+     * Стоимость не зависит от того, сколько заказов уже показано
+     */
+    @Query("""
+        SELECT new com.example.bookstore.dto.OrderSummary(
+            o.id, o.status, o.createdAt, o.totalAmount, o.deliveryAddress, SIZE(o.items))
+        FROM Order o
+        WHERE o.user.id = :userId
+          AND (o.createdAt, o.id) < (:createdAt, :id)
+        ORDER BY o.createdAt DESC, o.id DESC
+        """)
+    List<OrderSummary> findSummariesBefore(@Param("userId") Long userId,
+                                           @Param("createdAt") LocalDateTime createdAt,
+                                           @Param("id") Long id,
+                                           Pageable pageable);
+
+    /**
+     * Заказ вместе с позициями и книгами одним запросом
+     */
+    @EntityGraph(attributePaths = {"items", "items.book"})
+    Optional<Order> findWithItemsById(Long id);
+}
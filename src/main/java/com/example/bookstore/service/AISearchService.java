@@ -2,14 +2,28 @@ package com.example.bookstore.service;
 
 import com.example.bookstore.dto.SearchCriteria;
 import com.example.bookstore.model.Book;
+import com.example.bookstore.util.LruTtlCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Сервис для AI-поиска книг на естественном языке
@@ -19,12 +33,48 @@ public class AISearchService {
 
     private final ChatModel chatModel;
     private final BookService bookService;
+    private final CriteriaSearchService criteriaSearchService;
     private final ObjectMapper objectMapper;
-
-    public AISearchService(ChatModel chatModel, BookService bookService) {
+    private final int resultLimit;
+
+    private static final String FALLBACK_EXPLANATION = "Книга соответствует вашему запросу по жанру и тематике.";
+
+    // Объяснения генерируются параллельно в ограниченном пуле и кэшируются по (запрос, книга)
+    private final ThreadPoolExecutor explainExecutor;
+    private final LruTtlCache<String, String> explanationCache;
+    private final Duration explainTimeout;
+
+    public AISearchService(ChatModel chatModel, BookService bookService,
+                           CriteriaSearchService criteriaSearchService,
+                           @Value("${bookstore.ai.search.result-limit:50}") int resultLimit,
+                           @Value("${bookstore.ai.explain.parallelism:8}") int explainParallelism,
+                           @Value("${bookstore.ai.explain.queue-capacity:200}") int explainQueueCapacity,
+                           @Value("${bookstore.ai.explain.timeout:5s}") Duration explainTimeout,
+                           @Value("${bookstore.ai.explain.cache-size:5000}") int explainCacheSize,
+                           @Value("${bookstore.ai.explain.cache-ttl:1h}") Duration explainCacheTtl) {
         this.chatModel = chatModel;
         this.bookService = bookService;
+        this.criteriaSearchService = criteriaSearchService;
         this.objectMapper = new ObjectMapper();
+        this.resultLimit = resultLimit;
+        this.explainTimeout = explainTimeout;
+        this.explanationCache = new LruTtlCache<>(explainCacheSize, explainCacheTtl.toNanos(), TimeUnit.NANOSECONDS);
+
+        AtomicInteger counter = new AtomicInteger();
+        this.explainExecutor = new ThreadPoolExecutor(
+                explainParallelism, explainParallelism, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(explainQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ai-explain-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.explainExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainExecutor.shutdownNow();
     }
 
     /**
@@ -35,15 +85,14 @@ public class AISearchService {
             // Шаг 1: Извлекаем структурированные критерии из запроса
             SearchCriteria criteria = extractSearchCriteria(query);
 
-            // Шаг 2: Ищем книги по критериям
-            List<Book> allBooks = bookService.findAll();
-            List<Book> filteredBooks = filterBooks(allBooks, criteria);
+            // Шаг 2: Ищем книги по критериям (фильтрация и ранжирование в БД)
+            List<Book> filteredBooks = searchByCriteria(criteria, 0, resultLimit);
 
             // Шаг 3: Если найдено слишком мало или слишком много, уточняем
             if (filteredBooks.isEmpty()) {
                 // Попробуем более мягкий поиск
                 criteria = relaxCriteria(criteria);
-                filteredBooks = filterBooks(allBooks, criteria);
+                filteredBooks = searchByCriteria(criteria, 0, resultLimit);
             }
 
             return filteredBooks;
@@ -145,62 +194,10 @@ public class AISearchService {
     }
 
     /**
-     * Фильтрует книги по критериям
+     * Страница книг по критериям
      */
-    private List<Book> filterBooks(List<Book> books, SearchCriteria criteria) {
-        return books.stream()
-                .filter(book -> matchesCriteria(book, criteria))
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Проверяет соответствие книги критериям
-     */
-    private boolean matchesCriteria(Book book, SearchCriteria criteria) {
-        int matchScore = 0;
-        int totalCriteria = 0;
-
-        // Проверка жанра (строгое соответствие)
-        if (criteria.getGenre() != null) {
-            totalCriteria++;
-            if (book.getGenre() != null &&
-                    book.getGenre().toLowerCase().contains(criteria.getGenre().toLowerCase())) {
-                matchScore++;
-            }
-        }
-
-        // Проверка автора (строгое соответствие)
-        if (criteria.getAuthor() != null) {
-            totalCriteria++;
-            if (book.getAuthor() != null &&
-                    book.getAuthor().toLowerCase().contains(criteria.getAuthor().toLowerCase())) {
-                matchScore++;
-            }
-        }
-
-        // Проверка ключевых слов (мягкое соответствие)
-        if (criteria.getKeywords() != null && !criteria.getKeywords().isEmpty()) {
-            totalCriteria++;
-            String bookText = (book.getTitle() + " " + book.getDescription() + " " + book.getGenre())
-                    .toLowerCase();
-
-            long matchedKeywords = criteria.getKeywords().stream()
-                    .filter(keyword -> bookText.contains(keyword.toLowerCase()))
-                    .count();
-
-            // Требуем хотя бы 30% совпадения ключевых слов
-            if (matchedKeywords >= criteria.getKeywords().size() * 0.3) {
-                matchScore++;
-            }
-        }
-
-        // Если нет критериев, пропускаем книгу
-        if (totalCriteria == 0) {
-            return false;
-        }
-
-        // Требуем хотя бы 50% совпадения критериев
-        return (double) matchScore / totalCriteria >= 0.5;
+    public List<Book> searchByCriteria(SearchCriteria criteria, int page, int size) {
+        return criteriaSearchService.search(criteria, page, size);
     }
 
     /**
@@ -219,7 +216,68 @@ public class AISearchService {
      * Получает объяснение почему книга подошла под запрос
      */
     public String explainMatch(String query, Book book) {
+        String explanation = explanationCache.getOrLoad(explanationKey(query, book), k -> generateExplanation(query, book));
+        return explanation != null ? explanation : FALLBACK_EXPLANATION;
+    }
+
+    /**
+     * Объяснения для списка книг: запросы к модели выполняются параллельно
+     *
+     * Общий срок ожидания — bookstore.ai.explain.timeout; для книг, не успевших
+     * к сроку, возвращается стандартный текст. Незавершенные запросы не отменяются:
+     * их результат попадет в кэш и будет показан при следующем просмотре.
+     */
+    public Map<Long, String> explainMatches(String query, List<Book> books) {
+        Map<Long, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        for (Book book : books) {
+            String key = explanationKey(query, book);
+            String cached = explanationCache.get(key);
+            CompletableFuture<String> future;
+            if (cached != null) {
+                future = CompletableFuture.completedFuture(cached);
+            } else {
+                try {
+                    future = CompletableFuture.supplyAsync(
+                            () -> explanationCache.getOrLoad(key, k -> generateExplanation(query, book)),
+                            explainExecutor);
+                } catch (RejectedExecutionException e) {
+                    // Пул перегружен — не ждем, сразу отдаем стандартный текст
+                    future = CompletableFuture.completedFuture(null);
+                }
+            }
+            futures.put(book.getId(), future);
+        }
+
+        long deadline = System.nanoTime() + explainTimeout.toNanos();
+        Map<Long, String> explanations = new HashMap<>();
+        int timedOut = 0;
+        for (Map.Entry<Long, CompletableFuture<String>> entry : futures.entrySet()) {
+            String explanation = null;
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                explanation = entry.getValue().get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                timedOut++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("Ошибка генерации объяснения: " + e.getCause().getMessage());
+            }
+            explanations.put(entry.getKey(), explanation != null ? explanation : FALLBACK_EXPLANATION);
+        }
+
+        if (timedOut > 0) {
+            System.out.println("Объяснения: " + timedOut + " из " + books.size() + " не успели за " + explainTimeout);
+        }
+        return explanations;
+    }
+
+    /**
+     * Запрос объяснения к модели; null при ошибке (такой результат не кэшируется)
+     */
+    private String generateExplanation(String query, Book book) {
         try {
+            String description = book.getDescription() != null ? book.getDescription() : "";
             String prompt = String.format("""
                 Пользователь искал: "%s"
                 
@@ -233,9 +291,9 @@ public class AISearchService {
                 Будь конкретным и кратким.
                 """,
                     query, book.getTitle(), book.getAuthor(), book.getGenre(),
-                    book.getDescription().length() > 200
-                            ? book.getDescription().substring(0, 200) + "..."
-                            : book.getDescription()
+                    description.length() > 200
+                            ? description.substring(0, 200) + "..."
+                            : description
             );
 
             return chatModel.call(new Prompt(prompt))
@@ -244,7 +302,13 @@ public class AISearchService {
                     .getText();
 
         } catch (Exception e) {
-            return "Книга соответствует вашему запросу по жанру и тематике.";
+            System.err.println("Ошибка генерации объяснения для книги " + book.getId() + ": " + e.getMessage());
+            return null;
         }
     }
-}
\ No newline at end of file
+
+    private static String explanationKey(String query, Book book) {
+        String normalized = query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase();
+        return book.getId() + ":" + normalized;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.util.PgVector;
+import com.example.bookstore.vector.VectorIndex;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Хранилище эмбеддингов книг (таблица book_embedding)
+ *
+ * Единственная точка чтения и записи векторов: сущность Book их не содержит.
+ * Запись сразу обновляет индекс в памяти (если он включен) и публикует
+ * BookEmbeddingsChangedEvent, по которому пересчитываются списки похожих книг.
+ */
+@Service
+public class BookEmbeddingStore {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO book_embedding (book_id, embedding, content_hash, model, updated_at)
+            VALUES (?, CAST(? AS %s), ?, ?, CURRENT_TIMESTAMP)
+            ON CONFLICT (book_id) DO UPDATE
+            SET embedding = EXCLUDED.embedding,
+                content_hash = EXCLUDED.content_hash,
+                model = EXCLUDED.model,
+                updated_at = EXCLUDED.updated_at
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VectorIndex vectorIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String upsertSql;
+
+    public BookEmbeddingStore(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              ObjectProvider<VectorIndex> vectorIndexProvider,
+                              ApplicationEventPublisher eventPublisher,
+                              EmbeddingSchema embeddingSchema) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vectorIndex = vectorIndexProvider.getIfAvailable();
+        this.eventPublisher = eventPublisher;
+        this.upsertSql = UPSERT_SQL.formatted(embeddingSchema.getType());
+    }
+
+    /**
+     * Эмбеддинг книги или null, если он еще не создан
+     */
+    public float[] find(Long bookId) {
+        if (vectorIndex != null) {
+            float[] cached = vectorIndex.get(bookId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<float[]> rows = jdbcTemplate.query(
+                "SELECT embedding::vector AS embedding FROM book_embedding WHERE book_id = ?",
+                (rs, rowNum) -> PgVector.toArray(rs.getObject("embedding")),
+                bookId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Эмбеддинги нескольких книг одним запросом: bookId → вектор (книги без эмбеддинга отсутствуют)
+     */
+    public Map<Long, float[]> findAll(Collection<Long> bookIds) {
+        Map<Long, float[]> result = new HashMap<>(bookIds.size() * 2);
+        if (bookIds.isEmpty()) {
+            return result;
+        }
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT book_id, embedding::vector AS embedding FROM book_embedding WHERE book_id = ANY(?)");
+                    ps.setArray(1, con.createArrayOf("bigint", bookIds.toArray()));
+                    return ps;
+                },
+                rs -> {
+                    float[] embedding = PgVector.toArray(rs.getObject("embedding"));
+                    if (embedding != null) {
+                        result.put(rs.getLong("book_id"), embedding);
+                    }
+                }
+        );
+        return result;
+    }
+
+    /**
+     * Хеш текста и модели, по которым построен сохраненный эмбеддинг
+     */
+    public String findContentHash(Long bookId) {
+        List<String> rows = jdbcTemplate.queryForList(
+                "SELECT content_hash FROM book_embedding WHERE book_id = ?", String.class, bookId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public void save(Long bookId, float[] embedding, String contentHash, String model) {
+        saveAll(List.of(new Entry(bookId, embedding, contentHash, model)));
+    }
+
+    /**
+     * Сохраняет пакет эмбеддингов одним batchUpdate в одной транзакции
+     */
+    public void saveAll(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(entries.size());
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            args.add(new Object[]{entry.bookId(), new PgVector(entry.embedding()), entry.contentHash(), entry.model()});
+            ids.add(entry.bookId());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(upsertSql, args));
+
+        if (vectorIndex != null) {
+            for (Entry entry : entries) {
+                vectorIndex.upsert(entry.bookId(), entry.embedding());
+            }
+        }
+        eventPublisher.publishEvent(new BookEmbeddingsChangedEvent(ids));
+    }
+
+    public void delete(Long bookId) {
+        jdbcTemplate.update("DELETE FROM book_embedding WHERE book_id = ?", bookId);
+        if (vectorIndex != null) {
+            vectorIndex.remove(bookId);
+        }
+        eventPublisher.publishEvent(new BookEmbeddingsChangedEvent(List.of(bookId)));
+    }
+
+    public long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM book_embedding", Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Идентификаторы всех книг с эмбеддингом
+     */
+    public List<Long> findBookIds() {
+        return jdbcTemplate.queryForList("SELECT book_id FROM book_embedding ORDER BY book_id", Long.class);
+    }
+
+    /**
+     * Потоково перебирает все эмбеддинги (для загрузки индекса в памяти)
+     */
+    public void forEach(BiConsumer<Long, float[]> consumer) {
+        jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement("SELECT book_id, embedding::vector AS embedding FROM book_embedding");
+                    ps.setFetchSize(500);
+                    return ps;
+                },
+                rs -> {
+                    float[] embedding = PgVector.toArray(rs.getObject("embedding"));
+                    if (embedding != null) {
+                        consumer.accept(rs.getLong("book_id"), embedding);
+                    }
+                }
+        );
+    }
+
+    /**
+     * Эмбеддинг книги вместе с хешем содержимого и идентификатором модели
+     */
+    public record Entry(Long bookId, float[] embedding, String contentHash, String model) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.bookstore.service;
+
+import java.util.Collection;
+
+/**
+ * Эмбеддинги книг записаны или удалены (публикует BookEmbeddingStore)
+ */
+public record BookEmbeddingsChangedEvent(Collection<Long> bookIds) {
+}
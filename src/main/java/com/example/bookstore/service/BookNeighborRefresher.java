@@ -0,0 +1,217 @@
+package com.example.bookstore.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Пересчет таблицы book_neighbors при изменении эмбеддингов
+ *
+ * Для каждой измененной книги пересчитываются:
+ * - ее собственный список соседей;
+ * - списки книг, где она уже указана (ее близость к ним изменилась);
+ * - списки ее новых ближайших соседей (теперь она может войти в их top-N).
+ * Изменения копятся в очереди и обрабатываются одним фоновым потоком после коммита,
+ * так что сохранение книги и пакеты индексации не ждут пересчета, а повторы схлопываются.
+ * Если изменений накопилось больше full-refresh-threshold или завершилась полная
+ * переиндексация (на время которой пересчет откладывается), выполняется один полный
+ * проход по всем книгам вместо многократного пересчета одних и тех же списков.
+ * Для книг с изменившимся списком сбрасывается кэш AI-ранжирования.
+ * При старте досчитываются книги с эмбеддингом, но без строки в book_neighbors.
+ */
+@Service
+public class BookNeighborRefresher {
+
+    private static final int MAX_BATCH = 256;
+
+    private final VectorSearchService vectorSearchService;
+    private final BookNeighborStore neighborStore;
+    private final BookEmbeddingStore embeddingStore;
+    private final ObjectProvider<BookRecommendationService> recommendationServiceProvider;
+    private final int neighborCount;
+    private final int fullRefreshThreshold;
+    private final ExecutorService executor;
+
+    private final Set<Long> pending = new LinkedHashSet<>();
+    private boolean scheduled;
+    private boolean fullRefreshRequested;
+    private int bulkUpdates;
+
+    public BookNeighborRefresher(VectorSearchService vectorSearchService,
+                                 BookNeighborStore neighborStore,
+                                 BookEmbeddingStore embeddingStore,
+                                 ObjectProvider<BookRecommendationService> recommendationServiceProvider,
+                                 @Value("${bookstore.recommendations.neighbors:20}") int neighborCount,
+                                 @Value("${bookstore.recommendations.full-refresh-threshold:5000}") int fullRefreshThreshold) {
+        this.vectorSearchService = vectorSearchService;
+        this.neighborStore = neighborStore;
+        this.embeddingStore = embeddingStore;
+        this.recommendationServiceProvider = recommendationServiceProvider;
+        this.neighborCount = neighborCount;
+        this.fullRefreshThreshold = fullRefreshThreshold;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "neighbor-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEmbeddingsChanged(BookEmbeddingsChangedEvent event) {
+        enqueue(event.bookIds());
+    }
+
+    /**
+     * После загрузки индекса в памяти (VectorSearchService.loadVectorIndex)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void refreshMissing() {
+        List<Long> missing = neighborStore.findMissing();
+        if (!missing.isEmpty()) {
+            System.out.println("Похожие книги будут посчитаны для " + missing.size() + " книг");
+            enqueue(missing);
+        }
+    }
+
+    /**
+     * Откладывает пересчет до endBulkUpdate (на время полной переиндексации)
+     */
+    public void beginBulkUpdate() {
+        synchronized (pending) {
+            bulkUpdates++;
+        }
+    }
+
+    /**
+     * @param completed массовое обновление прошло до конца — нужен полный проход
+     */
+    public void endBulkUpdate(boolean completed) {
+        synchronized (pending) {
+            bulkUpdates--;
+            fullRefreshRequested |= completed;
+            if (bulkUpdates > 0 || scheduled || (pending.isEmpty() && !fullRefreshRequested)) {
+                return;
+            }
+            scheduled = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    /**
+     * Пересчитывает списки, затронутые изменением эмбеддингов changedIds
+     */
+    public void refresh(Collection<Long> changedIds) {
+        Set<Long> changedLists = new LinkedHashSet<>();
+        Set<Long> affected = new LinkedHashSet<>(neighborStore.findReferencing(changedIds));
+        for (Long bookId : changedIds) {
+            affected.addAll(recompute(bookId, changedLists));
+        }
+        affected.removeAll(changedIds);
+        for (Long bookId : affected) {
+            recompute(bookId, changedLists);
+        }
+        recommendationServiceProvider.ifAvailable(service -> service.invalidateRerank(changedLists));
+    }
+
+    /**
+     * Пересчитывает списки всех книг с эмбеддингом
+     */
+    public void refreshAll() {
+        List<Long> bookIds = embeddingStore.findBookIds();
+        System.out.println("Полный пересчет похожих книг: " + bookIds.size() + " книг");
+        for (Long bookId : bookIds) {
+            recompute(bookId, null);
+        }
+        // Изменилась большая часть списков — ранжирование сбрасывается целиком
+        recommendationServiceProvider.ifAvailable(BookRecommendationService::invalidateAllRerank);
+    }
+
+    /**
+     * @param changedLists сюда добавляется bookId, если его список соседей изменился (null — не отслеживать)
+     * @return новые соседи книги
+     */
+    private List<Long> recompute(Long bookId, Set<Long> changedLists) {
+        List<Long> previous = changedLists != null ? neighborStore.find(bookId) : null;
+        List<Long> neighbors = vectorSearchService.findSimilarIds(bookId, neighborCount);
+        if (neighbors.isEmpty()) {
+            neighborStore.delete(bookId);
+        } else {
+            neighborStore.save(bookId, neighbors);
+        }
+        if (changedLists != null && !Objects.equals(previous, neighbors.isEmpty() ? null : neighbors)) {
+            changedLists.add(bookId);
+        }
+        return neighbors;
+    }
+
+    private void enqueue(Collection<Long> bookIds) {
+        synchronized (pending) {
+            pending.addAll(bookIds);
+            if (scheduled || bulkUpdates > 0) {
+                return;
+            }
+            scheduled = true;
+        }
+        executor.execute(this::drain);
+    }
+
+    private void drain() {
+        while (true) {
+            List<Long> batch = new ArrayList<>(MAX_BATCH);
+            boolean full = false;
+            synchronized (pending) {
+                if (bulkUpdates > 0) {
+                    // Изменения копятся до endBulkUpdate
+                    scheduled = false;
+                    return;
+                }
+                if (fullRefreshRequested || pending.size() >= fullRefreshThreshold) {
+                    full = true;
+                    fullRefreshRequested = false;
+                    pending.clear();
+                } else {
+                    Iterator<Long> iterator = pending.iterator();
+                    while (iterator.hasNext() && batch.size() < MAX_BATCH) {
+                        batch.add(iterator.next());
+                        iterator.remove();
+                    }
+                    if (batch.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+            }
+            try {
+                if (full) {
+                    refreshAll();
+                } else {
+                    refresh(batch);
+                }
+            } catch (Exception e) {
+                System.err.println("Ошибка пересчета похожих книг: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.util.LruTtlCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Хранилище предвычисленных похожих книг (таблица book_neighbors)
+ *
+ * Чтение: кэш в памяти → поиск по первичному ключу.
+ * Строки пересчитывает BookNeighborRefresher при каждом изменении эмбеддингов.
+ */
+@Service
+public class BookNeighborStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LruTtlCache<Long, List<Long>> cache;
+
+    public BookNeighborStore(JdbcTemplate jdbcTemplate,
+                             @Value("${bookstore.recommendations.neighbors-cache-size:10000}") int cacheSize,
+                             @Value("${bookstore.recommendations.neighbors-cache-ttl:1h}") Duration cacheTtl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = new LruTtlCache<>(cacheSize, cacheTtl.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * id похожих книг в порядке убывания близости или null, если список еще не посчитан
+     */
+    public List<Long> find(Long bookId) {
+        return cache.getOrLoad(bookId, this::load);
+    }
+
+    /**
+     * Сохраняет список соседей книги
+     */
+    public void save(Long bookId, List<Long> neighborIds) {
+        String sql = """
+                INSERT INTO book_neighbors (book_id, neighbor_ids, updated_at)
+                VALUES (?, ?, ?)
+                ON CONFLICT (book_id) DO UPDATE
+                SET neighbor_ids = EXCLUDED.neighbor_ids, updated_at = EXCLUDED.updated_at
+                """;
+        try {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setLong(1, bookId);
+                ps.setArray(2, con.createArrayOf("bigint", neighborIds.toArray()));
+                ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                return ps;
+            });
+            cache.put(bookId, List.copyOf(neighborIds));
+        } catch (Exception e) {
+            // Книга могла быть удалена, пока считались соседи
+            System.err.println("Ошибка сохранения похожих книг для " + bookId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет список соседей книги (у книги больше нет эмбеддинга)
+     */
+    public void delete(Long bookId) {
+        jdbcTemplate.update("DELETE FROM book_neighbors WHERE book_id = ?", bookId);
+        cache.invalidate(bookId);
+    }
+
+    /**
+     * Книги, в списках которых указана хотя бы одна из bookIds
+     */
+    public List<Long> findReferencing(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(
+                            "SELECT book_id FROM book_neighbors WHERE neighbor_ids && ?");
+                    Array array = con.createArrayOf("bigint", bookIds.toArray());
+                    ps.setArray(1, array);
+                    return ps;
+                },
+                (rs, rowNum) -> rs.getLong(1)
+        );
+    }
+
+    /**
+     * Книги с эмбеддингом, для которых список соседей еще не посчитан
+     */
+    public List<Long> findMissing() {
+        return jdbcTemplate.queryForList("""
+                SELECT e.book_id FROM book_embedding e
+                WHERE NOT EXISTS (SELECT 1 FROM book_neighbors n WHERE n.book_id = e.book_id)
+                ORDER BY e.book_id
+                """, Long.class);
+    }
+
+    /**
+     * Сбрасывает все списки (после смены типа или размерности эмбеддингов)
+     */
+    public void invalidateAll() {
+        jdbcTemplate.update("DELETE FROM book_neighbors");
+        cache.clear();
+    }
+
+    public LruTtlCache.Stats getStats() {
+        return cache.stats();
+    }
+
+    private List<Long> load(Long bookId) {
+        String sql = "SELECT neighbor_ids FROM book_neighbors WHERE book_id = ?";
+        List<List<Long>> rows = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Long[] ids = (Long[]) rs.getArray("neighbor_ids").getArray();
+            return List.copyOf(Arrays.asList(ids));
+        }, bookId);
+
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+}
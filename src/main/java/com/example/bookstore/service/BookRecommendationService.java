@@ -1,12 +1,19 @@
 package com.example.bookstore.service;
 
 import com.example.bookstore.model.Book;
+import com.example.bookstore.util.LruTtlCache;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,37 +22,50 @@ public class BookRecommendationService {
     private final ChatModel chatModel;
     private final BookService bookService;
     private final VectorSearchService vectorSearchService;
+    private final BookNeighborStore neighborStore;
+    private final int neighborCount;
+
+    // Результат AI-ранжирования: книга и лимит → id рекомендаций в порядке AI
+    private final LruTtlCache<RerankKey, List<Long>> rerankCache;
 
     public BookRecommendationService(ChatModel chatModel,
                                      BookService bookService,
-                                     VectorSearchService vectorSearchService) {
+                                     VectorSearchService vectorSearchService,
+                                     BookNeighborStore neighborStore,
+                                     @Value("${bookstore.recommendations.neighbors:20}") int neighborCount,
+                                     @Value("${bookstore.recommendations.rerank-cache-size:5000}") int rerankCacheSize,
+                                     @Value("${bookstore.recommendations.rerank-ttl:6h}") Duration rerankTtl) {
         this.chatModel = chatModel;
         this.bookService = bookService;
         this.vectorSearchService = vectorSearchService;
+        this.neighborStore = neighborStore;
+        this.neighborCount = neighborCount;
+        this.rerankCache = new LruTtlCache<>(rerankCacheSize, rerankTtl.toNanos(), TimeUnit.NANOSECONDS);
     }
 
     /**
      * Получить AI-рекомендации похожих книг
-     * Теперь использует векторный поиск как основу
+     * Кандидаты берутся из предвычисленной таблицы соседей, ранжирование AI кэшируется
      */
     public List<Book> getRecommendations(Book currentBook, int limit) {
         try {
-            // Шаг 1: Векторный поиск похожих книг (быстро и точно)
-            List<Book> vectorResults = vectorSearchService.findSimilarBooks(currentBook, limit * 2);
+            // Шаг 1: Похожие книги из book_neighbors (векторный поиск — только при промахе)
+            List<Book> vectorResults = getSimilarBooks(currentBook, limit * 2);
 
             if (vectorResults.isEmpty()) {
                 // Fallback на старый метод
                 return getFallbackRecommendations(currentBook, limit);
             }
 
-            // Шаг 2: Используем AI для ранжирования и фильтрации
-            List<Book> refinedResults = refineRecommendationsWithAI(
-                    currentBook,
-                    vectorResults,
-                    limit
-            );
+            // Шаг 2: AI-ранжирование, повторно используется до истечения TTL
+            RerankKey key = new RerankKey(currentBook.getId(), limit);
+            List<Long> rankedIds = rerankCache.getOrLoad(key, k -> {
+                List<Book> refined = refineRecommendationsWithAI(currentBook, vectorResults, limit);
+                // Ошибку AI не кэшируем — при следующем просмотре попробуем снова
+                return refined == null ? null : refined.stream().map(Book::getId).collect(Collectors.toList());
+            });
 
-            return refinedResults;
+            return orderByIds(vectorResults, rankedIds != null ? rankedIds : List.of(), limit);
 
         } catch (Exception e) {
             System.err.println("Ошибка при получении рекомендаций: " + e.getMessage());
@@ -53,6 +73,61 @@ public class BookRecommendationService {
         }
     }
 
+    /**
+     * Сбрасывает AI-ранжирование книг, у которых изменился список соседей
+     */
+    public void invalidateRerank(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new HashSet<>(bookIds);
+        rerankCache.invalidateIf(key -> ids.contains(key.bookId()));
+    }
+
+    public void invalidateAllRerank() {
+        rerankCache.clear();
+    }
+
+    /**
+     * Похожие книги по предвычисленному списку соседей (см. BookNeighborRefresher)
+     * Если список еще не посчитан, выполняется kNN-поиск и результат сохраняется
+     */
+    public List<Book> getSimilarBooks(Book currentBook, int limit) {
+        List<Long> neighborIds = neighborStore.find(currentBook.getId());
+
+        if (neighborIds == null) {
+            List<Book> similar = vectorSearchService.findSimilarBooks(currentBook, Math.max(neighborCount, limit));
+            if (!similar.isEmpty()) {
+                neighborStore.save(currentBook.getId(),
+                        similar.stream().map(Book::getId).collect(Collectors.toList()));
+            }
+            return similar.stream().limit(limit).collect(Collectors.toList());
+        }
+
+        List<Long> ids = neighborIds.subList(0, Math.min(limit, neighborIds.size()));
+        return vectorSearchService.findBooksByIds(ids);
+    }
+
+    /**
+     * Книги в порядке ранжирования; не вошедшие в него кандидаты добавляются в конец
+     */
+    private List<Book> orderByIds(List<Book> candidates, List<Long> rankedIds, int limit) {
+        List<Book> result = new ArrayList<>(limit);
+        for (Long id : rankedIds) {
+            candidates.stream()
+                    .filter(b -> b.getId().equals(id))
+                    .findFirst()
+                    .ifPresent(result::add);
+        }
+        if (result.size() < limit) {
+            candidates.stream()
+                    .filter(b -> !result.contains(b))
+                    .limit(limit - result.size())
+                    .forEach(result::add);
+        }
+        return result.stream().limit(limit).collect(Collectors.toList());
+    }
+
     /**
      * Уточняет рекомендации с помощью AI
      */
@@ -110,8 +185,8 @@ public class BookRecommendationService {
 
         } catch (Exception e) {
             System.err.println("Ошибка AI-уточнения: " + e.getMessage());
-            // При ошибке возвращаем первые N кандидатов
-            return candidates.stream().limit(limit).collect(Collectors.toList());
+            // При ошибке остается порядок векторного поиска
+            return null;
         }
     }
 
@@ -159,23 +234,17 @@ public class BookRecommendationService {
      * Запасной вариант рекомендаций
      */
     private List<Book> getFallbackRecommendations(Book currentBook, int limit) {
-        List<Book> sameGenre = bookService.findAll().stream()
-                .filter(book -> !book.getId().equals(currentBook.getId()))
-                .filter(book -> book.getStock() > 0)
-                .filter(book -> book.getGenre() != null &&
-                        book.getGenre().equalsIgnoreCase(currentBook.getGenre()))
-                .limit(limit)
-                .collect(Collectors.toList());
+        List<Book> sameGenre = new ArrayList<>();
+        if (currentBook.getGenre() != null) {
+            sameGenre.addAll(bookService.findInStockByGenre(currentBook.getGenre(), currentBook.getId(), limit));
+        }
 
         if (sameGenre.size() < limit) {
-            List<Book> additional = bookService.findAll().stream()
-                    .filter(book -> !book.getId().equals(currentBook.getId()))
-                    .filter(book -> book.getStock() > 0)
-                    .filter(book -> !sameGenre.contains(book))
-                    .limit(limit - sameGenre.size())
-                    .collect(Collectors.toList());
-
-            sameGenre.addAll(additional);
+            List<Long> excludeIds = new ArrayList<>();
+            excludeIds.add(currentBook.getId());
+            sameGenre.forEach(book -> excludeIds.add(book.getId()));
+
+            sameGenre.addAll(bookService.findInStockExcluding(excludeIds, limit - sameGenre.size()));
         }
 
         return sameGenre;
@@ -203,4 +272,7 @@ public class BookRecommendationService {
             return "Похожий жанр и стиль";
         }
     }
+
+    private record RerankKey(Long bookId, int limit) {
+    }
 }
\ No newline at end of file
@@ -1,7 +1,13 @@
 package com.example.bookstore.service;
 
+import com.example.bookstore.dto.BookAvailability;
+import com.example.bookstore.dto.BookSummary;
 import com.example.bookstore.model.Book;
 import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.util.EmbeddingHash;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,17 +18,51 @@ public class BookService {
     private final BookRepository repo;
     private final EmbeddingService embeddingService;
     private final VectorSearchService vectorSearchService;
+    private final BookEmbeddingStore embeddingStore;
+    private final HybridSearchService hybridSearchService;
+    private final InventoryService inventoryService;
 
     public BookService(BookRepository repo,
                        EmbeddingService embeddingService,
-                       VectorSearchService vectorSearchService) {
+                       VectorSearchService vectorSearchService,
+                       BookEmbeddingStore embeddingStore,
+                       HybridSearchService hybridSearchService,
+                       InventoryService inventoryService) {
         this.repo = repo;
         this.embeddingService = embeddingService;
         this.vectorSearchService = vectorSearchService;
+        this.embeddingStore = embeddingStore;
+        this.hybridSearchService = hybridSearchService;
+        this.inventoryService = inventoryService;
     }
 
-    public List<Book> findAll() {
-        return repo.findAll();
+    /**
+     * Страница каталога (номер страницы с нуля), упорядочено по id
+     */
+    public Page<BookSummary> findPage(int page, int size) {
+        return repo.findSummaries(PageRequest.of(Math.max(0, page), size, Sort.by("id")));
+    }
+
+    /**
+     * Следующая порция каталога после книги afterId (keyset-пагинация)
+     */
+    public List<BookSummary> findPageAfter(long afterId, int size) {
+        return repo.findSummariesAfter(afterId, PageRequest.ofSize(size));
+    }
+
+    /**
+     * Книги в наличии того же жанра, кроме указанной
+     */
+    public List<Book> findInStockByGenre(String genre, Long excludeId, int limit) {
+        return repo.findByGenreIgnoreCaseAndStockGreaterThanAndIdNotOrderByIdAsc(
+                genre, 0, excludeId, PageRequest.ofSize(limit));
+    }
+
+    /**
+     * Книги в наличии, кроме указанных
+     */
+    public List<Book> findInStockExcluding(List<Long> excludeIds, int limit) {
+        return repo.findByStockGreaterThanAndIdNotInOrderByIdAsc(0, excludeIds, PageRequest.ofSize(limit));
     }
 
     public Book findById(Long id) {
@@ -30,36 +70,28 @@ public class BookService {
     }
 
     /**
-     * Умный поиск: автоматически выбирает между текстовым и семантическим
+     * Цена и остаток книги без загрузки сущности целиком
+     */
+    public BookAvailability findAvailability(Long id) {
+        List<BookAvailability> result = repo.findAvailability(List.of(id));
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Умный поиск: объединяет семантический и текстовый поиск (RRF)
      */
     public List<Book> search(String q) {
         if (q == null || q.isBlank()) {
-            return findAll();
+            return List.of();
         }
-
-        // Пробуем семантический поиск
-        List<Book> semanticResults = vectorSearchService.semanticSearch(q, 10);
-
-        // Если найдено мало результатов, добавляем текстовый поиск
-        if (semanticResults.size() < 5) {
-            List<Book> textResults = repo.findByTitleContainingIgnoreCase(q);
-
-            // Объединяем результаты, избегая дубликатов
-            for (Book book : textResults) {
-                if (!semanticResults.contains(book) && semanticResults.size() < 10) {
-                    semanticResults.add(book);
-                }
-            }
-        }
-
-        return semanticResults;
+        return hybridSearchService.search(q, 10);
     }
 
     /**
      * Гибридный поиск (лучший из миров)
      */
     public List<Book> hybridSearch(String query) {
-        return vectorSearchService.hybridSearch(query, 20);
+        return hybridSearchService.search(query, 20);
     }
 
     /**
@@ -69,38 +101,42 @@ public class BookService {
         return vectorSearchService.semanticSearchInStock(query, 10);
     }
 
+    /**
+     * Сохраняет книгу; эмбеддинг генерируется, только если изменился текст книги или модель
+     *
+     * Сохраненный хеш читается из book_embedding только здесь (по первичному ключу),
+     * а не вместе с каждой загрузкой Book.
+     */
     @Transactional
     public Book save(Book book) {
-        // Генерируем эмбеддинг при сохранении
-        if (book.getEmbedding() == null || shouldRegenerateEmbedding(book)) {
-            embeddingService.generateEmbeddingForBook(book);
-        }
-        return repo.save(book);
-    }
+        String modelId = embeddingService.getModelId();
+        String text = book.getTextForEmbedding();
+        String contentHash = EmbeddingHash.of(text, modelId);
 
-    @Transactional
-    public void delete(Long id) {
-        repo.deleteById(id);
+        boolean regenerate = book.getId() == null || !contentHash.equals(embeddingStore.findContentHash(book.getId()));
+
+        Book saved = repo.save(book);
+        if (regenerate) {
+            embeddingStore.save(saved.getId(), embeddingService.generateEmbedding(text), contentHash, modelId);
+        }
+        return saved;
     }
 
     /**
-     * Проверяет, нужно ли пересоздать эмбеддинг
-     * (например, если изменилось описание)
+     * Правка книги вместе с изменением остатка на stockDelta в одной транзакции:
+     * если остаток стал бы отрицательным, правка каталога тоже не сохраняется
      */
-    private boolean shouldRegenerateEmbedding(Book book) {
-        if (book.getId() == null) {
-            return true; // Новая книга
-        }
-
-        Book existing = repo.findById(book.getId()).orElse(null);
-        if (existing == null) {
-            return true;
+    @Transactional
+    public Book save(Book book, int stockDelta) {
+        if (book.getId() != null) {
+            inventoryService.adjust(book.getId(), stockDelta);
         }
+        return save(book);
+    }
 
-        // Проверяем, изменились ли важные поля
-        return !book.getTitle().equals(existing.getTitle()) ||
-                !book.getAuthor().equals(existing.getAuthor()) ||
-                !book.getDescription().equals(existing.getDescription()) ||
-                !book.getGenre().equals(existing.getGenre());
+    @Transactional
+    public void delete(Long id) {
+        repo.deleteById(id);
+        embeddingStore.delete(id);
     }
-}
\ No newline at end of file
+}
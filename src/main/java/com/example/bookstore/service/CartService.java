@@ -1,76 +1,114 @@
 package com.example.bookstore.service;
 
+import com.example.bookstore.cart.CartStore;
+import com.example.bookstore.dto.BookAvailability;
 import com.example.bookstore.dto.CartItem;
-import com.example.bookstore.model.Book;
+import com.example.bookstore.dto.CartLine;
+import com.example.bookstore.repository.BookRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.web.context.annotation.SessionScope;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
+/**
+ * Корзина покупателя по идентификатору корзины (cookie CART_ID)
+ * Хранение — в CartStore (память или БД, см. CartStoreConfig)
+ */
 @Service
-@SessionScope
 public class CartService {
-    private final List<CartItem> items = new ArrayList<>();
+    private final CartStore cartStore;
+    private final BookRepository bookRepository;
 
-    public List<CartItem> getItems() {
-        return items;
+    public CartService(CartStore cartStore, BookRepository bookRepository) {
+        this.cartStore = cartStore;
+        this.bookRepository = bookRepository;
     }
 
-    public void addItem(Book book, Integer quantity) {
-        Optional<CartItem> existingItem = items.stream()
-                .filter(item -> item.getBookId().equals(book.getId()))
-                .findFirst();
+    public List<CartItem> getItems(String cartId) {
+        return cartId == null ? List.of() : cartStore.getItems(cartId);
+    }
+
+    /**
+     * Позиции корзины, сверенные с текущими ценой и остатком
+     */
+    public List<CartLine> getLines(String cartId) {
+        return revalidate(getItems(cartId));
+    }
 
-        if (existingItem.isPresent()) {
-            existingItem.get().setQuantity(existingItem.get().getQuantity() + quantity);
-        } else {
-            items.add(CartItem.builder()
-                    .bookId(book.getId())
-                    .title(book.getTitle())
-                    .author(book.getAuthor())
-                    .price(book.getPrice())
-                    .quantity(quantity)
+    /**
+     * Сверка позиций с БД: цены и остатки всех книг корзины одним запросом WHERE id IN (...)
+     */
+    public List<CartLine> revalidate(List<CartItem> items) {
+        if (items.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            ids.add(item.getBookId());
+        }
+        Map<Long, BookAvailability> current = new HashMap<>(items.size() * 2);
+        for (BookAvailability availability : bookRepository.findAvailability(ids)) {
+            current.put(availability.getId(), availability);
+        }
+
+        List<CartLine> lines = new ArrayList<>(items.size());
+        for (CartItem item : items) {
+            BookAvailability book = current.get(item.getBookId());
+            lines.add(CartLine.builder()
+                    .bookId(item.getBookId())
+                    .title(book != null ? book.getTitle() : item.getTitle())
+                    .author(book != null ? book.getAuthor() : item.getAuthor())
+                    .quantity(item.getQuantity())
+                    .cartPrice(item.getPrice())
+                    .price(book != null ? book.getPrice() : null)
+                    .stock(book != null ? book.getStock() : null)
                     .build());
         }
+        return lines;
     }
 
-    public void removeItem(Long bookId) {
-        items.removeIf(item -> item.getBookId().equals(bookId));
+    public void addItem(String cartId, BookAvailability book, Integer quantity) {
+        cartStore.add(cartId, CartItem.builder()
+                .bookId(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .price(book.getPrice())
+                .quantity(quantity)
+                .build());
     }
 
-    public void updateQuantity(Long bookId, Integer quantity) {
-        items.stream()
-                .filter(item -> item.getBookId().equals(bookId))
-                .findFirst()
-                .ifPresent(item -> {
-                    if (quantity <= 0) {
-                        removeItem(bookId);
-                    } else {
-                        item.setQuantity(quantity);
-                    }
-                });
+    public void removeItem(String cartId, Long bookId) {
+        if (cartId != null) {
+            cartStore.remove(cartId, bookId);
+        }
     }
 
-    public void clear() {
-        items.clear();
+    public void updateQuantity(String cartId, Long bookId, Integer quantity) {
+        if (cartId != null) {
+            cartStore.updateQuantity(cartId, bookId, quantity);
+        }
     }
 
-    public BigDecimal getTotal() {
-        return items.stream()
-                .map(CartItem::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public void clear(String cartId) {
+        if (cartId != null) {
+            cartStore.clear(cartId);
+        }
     }
 
-    public int getItemCount() {
-        return items.stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+    public static BigDecimal getTotal(List<CartLine> lines) {
+        return lines.stream()
+                .map(CartLine::getSubtotal)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
-    public boolean isEmpty() {
-        return items.isEmpty();
+    /**
+     * Есть позиции, которые нельзя заказать (книга удалена или не хватает остатка)
+     */
+    public static boolean hasUnavailable(List<CartLine> lines) {
+        return lines.stream().anyMatch(CartLine::isOutOfStock);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,126 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.SearchCriteria;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRows;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Поиск книг по структурированным критериям AI-поиска
+ *
+ * Критерии компилируются в один SQL-запрос: условия LOWER(x) LIKE '%...%'
+ * используют триграммные индексы (V10), подсчет совпадений и сортировка
+ * выполняются в БД, результат возвращается страницами.
+ *
+ * Правило отбора то же, что было в памяти: совпало не меньше половины критериев,
+ * критерий ключевых слов засчитывается при совпадении хотя бы 30% слов.
+ */
+@Service
+public class CriteriaSearchService {
+
+    private static final double KEYWORD_MATCH_RATIO = 0.3;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public CriteriaSearchService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Страница книг, подходящих под критерии, от лучших совпадений к худшим
+     *
+     * @param page номер страницы с нуля
+     */
+    public List<Book> search(SearchCriteria criteria, int page, int size) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        List<String> matchers = new ArrayList<>();
+        List<String> criterionScores = new ArrayList<>();
+
+        if (criteria.getGenre() != null && !criteria.getGenre().isBlank()) {
+            params.addValue("genre", likePattern(criteria.getGenre()));
+            matchers.add("LOWER(genre) LIKE :genre");
+            criterionScores.add("CASE WHEN LOWER(genre) LIKE :genre THEN 1 ELSE 0 END");
+        }
+
+        if (criteria.getAuthor() != null && !criteria.getAuthor().isBlank()) {
+            params.addValue("author", likePattern(criteria.getAuthor()));
+            matchers.add("LOWER(author) LIKE :author");
+            criterionScores.add("CASE WHEN LOWER(author) LIKE :author THEN 1 ELSE 0 END");
+        }
+
+        List<String> keywordHits = new ArrayList<>();
+        Set<String> keywords = normalizeKeywords(criteria.getKeywords());
+        int i = 0;
+        for (String keyword : keywords) {
+            String name = "kw" + i++;
+            params.addValue(name, likePattern(keyword));
+            String condition = "(LOWER(title) LIKE :" + name
+                    + " OR LOWER(description) LIKE :" + name
+                    + " OR LOWER(genre) LIKE :" + name + ")";
+            matchers.add(condition);
+            keywordHits.add("CASE WHEN " + condition + " THEN 1 ELSE 0 END");
+        }
+
+        String keywordScore = keywordHits.isEmpty() ? "0" : String.join(" + ", keywordHits);
+        if (!keywords.isEmpty()) {
+            params.addValue("minKeywords", (int) Math.ceil(keywords.size() * KEYWORD_MATCH_RATIO));
+            criterionScores.add("CASE WHEN (" + keywordScore + ") >= :minKeywords THEN 1 ELSE 0 END");
+        }
+
+        // Без критериев книги не подходят (как и при фильтрации в памяти)
+        if (criterionScores.isEmpty()) {
+            return List.of();
+        }
+
+        params.addValue("totalCriteria", criterionScores.size());
+        params.addValue("limit", size);
+        params.addValue("offset", (long) Math.max(0, page) * size);
+
+        // Внутреннее WHERE — необходимое условие (хотя бы одно совпадение),
+        // по нему планировщик может объединить триграммные индексы (BitmapOr)
+        String sql = "SELECT " + BookRows.COLUMNS + " FROM ("
+                + " SELECT " + BookRows.COLUMNS + ","
+                + " (" + String.join(" + ", criterionScores) + ") AS matched_criteria,"
+                + " (" + keywordScore + ") AS matched_keywords"
+                + " FROM book"
+                + " WHERE " + String.join(" OR ", matchers)
+                + " ) scored"
+                + " WHERE matched_criteria * 2 >= :totalCriteria"
+                + " ORDER BY matched_criteria DESC, matched_keywords DESC, id"
+                + " LIMIT :limit OFFSET :offset";
+
+        return jdbcTemplate.query(sql, params, BookRows.MAPPER);
+    }
+
+    private static Set<String> normalizeKeywords(List<String> keywords) {
+        Set<String> result = new LinkedHashSet<>();
+        if (keywords == null) {
+            return result;
+        }
+        for (String keyword : keywords) {
+            if (keyword != null && !keyword.isBlank()) {
+                result.add(keyword.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * '%значение%' в нижнем регистре с экранированием спецсимволов LIKE
+     */
+    static String likePattern(String value) {
+        String escaped = value.trim().toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.util.EmbeddingHash;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Потоковый конвейер генерации эмбеддингов для каталога
+ *
+ * Этапы:
+ * 1. Чтение книг страницами по ключу (id > последний id), без OFFSET и без загрузки всего каталога
+ * 2. Генерация эмбеддингов пакетами в ограниченном пуле потоков
+ * 3. Запись пакета в book_embedding одним JDBC batchUpdate в отдельной короткой транзакции
+ *
+ * Backpressure: читатель не опережает запись больше чем на max-in-flight пакетов.
+ *
+ * Книги, у которых хеш текста и модели совпадает с сохраненным (см. EmbeddingHash),
+ * пропускаются без обращения к модели, поэтому полная переиндексация
+ * пропорциональна числу реально измененных книг.
+ */
+@Service
+public class EmbeddingPipeline {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingService embeddingService;
+    private final BookEmbeddingStore embeddingStore;
+
+    private final int pageSize;
+    private final int batchSize;
+    private final int parallelism;
+    private final int maxInFlightBatches;
+    private final double maxBatchesPerSecond;
+
+    public EmbeddingPipeline(JdbcTemplate jdbcTemplate,
+                             EmbeddingService embeddingService,
+                             BookEmbeddingStore embeddingStore,
+                             @Value("${bookstore.indexing.page-size:500}") int pageSize,
+                             @Value("${bookstore.indexing.batch-size:32}") int batchSize,
+                             @Value("${bookstore.indexing.parallelism:4}") int parallelism,
+                             @Value("${bookstore.indexing.max-in-flight-batches:8}") int maxInFlightBatches,
+                             @Value("${bookstore.indexing.max-batches-per-second:0}") double maxBatchesPerSecond) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingService = embeddingService;
+        this.embeddingStore = embeddingStore;
+        this.pageSize = Math.max(1, pageSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.parallelism = Math.max(1, parallelism);
+        this.maxInFlightBatches = Math.max(this.parallelism, maxInFlightBatches);
+        this.maxBatchesPerSecond = maxBatchesPerSecond;
+    }
+
+    /**
+     * Запускает конвейер и блокируется до его завершения
+     *
+     * @param onlyMissing true — только книги без эмбеддинга, false — весь каталог
+     */
+    public Result run(boolean onlyMissing) {
+        return run(onlyMissing, 0, Listener.NONE);
+    }
+
+    /**
+     * Запускает конвейер с книги, следующей за startAfterId
+     *
+     * Конвейер сообщает слушателю контрольную точку — наибольший id, до которого
+     * включительно все пакеты успешно записаны, — и останавливается, как только
+     * слушатель попросит об этом (пауза или отмена).
+     */
+    public Result run(boolean onlyMissing, long startAfterId, Listener listener) {
+        long startedAt = System.currentTimeMillis();
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        Semaphore inFlight = new Semaphore(maxInFlightBatches);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, workerThreadFactory());
+        Checkpoints checkpoints = new Checkpoints(startAfterId);
+
+        String selectSql = """
+                SELECT b.id, b.title, b.author, b.genre, b.description, e.content_hash
+                FROM book b
+                LEFT JOIN book_embedding e ON e.book_id = b.id
+                WHERE b.id > ?
+                """ + (onlyMissing ? "AND e.book_id IS NULL\n" : "") + """
+                ORDER BY b.id
+                LIMIT ?
+                """;
+
+        long minIntervalNanos = maxBatchesPerSecond > 0 ? (long) (1_000_000_000L / maxBatchesPerSecond) : 0;
+        long nextSubmitAt = System.nanoTime();
+        long lastId = startAfterId;
+        boolean stopped = false;
+
+        try {
+            pages:
+            while (true) {
+                List<Candidate> page = jdbcTemplate.query(selectSql, (rs, rowNum) -> new Candidate(
+                        Book.builder()
+                                .id(rs.getLong("id"))
+                                .title(rs.getString("title"))
+                                .author(rs.getString("author"))
+                                .genre(rs.getString("genre"))
+                                .description(rs.getString("description"))
+                                .build(),
+                        rs.getString("content_hash")), lastId, pageSize);
+
+                if (page.isEmpty()) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).book().getId();
+
+                for (int from = 0; from < page.size(); from += batchSize) {
+                    if (listener.shouldStop()) {
+                        stopped = true;
+                        break pages;
+                    }
+
+                    List<Candidate> batch = page.subList(from, Math.min(from + batchSize, page.size()));
+                    long sequence = checkpoints.register(batch.get(batch.size() - 1).book().getId());
+
+                    if (minIntervalNanos > 0) {
+                        long waitNanos = nextSubmitAt - System.nanoTime();
+                        if (waitNanos > 0) {
+                            TimeUnit.NANOSECONDS.sleep(waitNanos);
+                        }
+                        nextSubmitAt = Math.max(nextSubmitAt, System.nanoTime()) + minIntervalNanos;
+                    }
+
+                    inFlight.acquire();
+                    executor.execute(() -> {
+                        boolean succeeded = false;
+                        try {
+                            skipped.addAndGet(processBatch(batch));
+                            long total = processed.addAndGet(batch.size());
+                            if (total / 100 != (total - batch.size()) / 100) {
+                                System.out.println("Обработано " + total + " книг");
+                            }
+                            succeeded = true;
+                        } catch (Exception e) {
+                            failed.addAndGet(batch.size());
+                            System.err.println("Ошибка обработки пакета книг " + batch.get(0).book().getId()
+                                    + ".." + batch.get(batch.size() - 1).book().getId() + ": " + e.getMessage());
+                        } finally {
+                            checkpoints.complete(sequence, succeeded);
+                            checkpoints.publish(listener, processed, failed);
+                            inFlight.release();
+                        }
+                    });
+                }
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+
+            // Дожидаемся завершения всех отправленных пакетов
+            inFlight.acquire(maxInFlightBatches);
+            inFlight.release(maxInFlightBatches);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            System.err.println("Конвейер эмбеддингов прерван");
+        } finally {
+            executor.shutdown();
+        }
+
+        Result result = new Result(processed.get(), failed.get(), skipped.get(),
+                System.currentTimeMillis() - startedAt, checkpoints.watermark(), stopped);
+        System.out.println("Конвейер эмбеддингов " + (stopped ? "остановлен" : "завершен") + ": " + result);
+        return result;
+    }
+
+    /**
+     * Количество книг, которые обработает конвейер, начиная после startAfterId
+     */
+    public long countRemaining(boolean onlyMissing, long startAfterId) {
+        String sql = "SELECT COUNT(*) FROM book b WHERE b.id > ?"
+                + (onlyMissing ? " AND NOT EXISTS (SELECT 1 FROM book_embedding e WHERE e.book_id = b.id)" : "");
+        Long count = jdbcTemplate.queryForObject(sql, Long.class, startAfterId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Генерирует эмбеддинги для измененных книг пакета и записывает их одной транзакцией
+     *
+     * @return количество книг, пропущенных из-за совпадения хеша
+     */
+    private int processBatch(List<Candidate> batch) {
+        String modelId = embeddingService.getModelId();
+        List<Long> changedIds = new ArrayList<>(batch.size());
+        List<String> texts = new ArrayList<>(batch.size());
+        List<String> hashes = new ArrayList<>(batch.size());
+        for (Candidate candidate : batch) {
+            String text = candidate.book().getTextForEmbedding();
+            String hash = EmbeddingHash.of(text, modelId);
+            if (!hash.equals(candidate.contentHash())) {
+                changedIds.add(candidate.book().getId());
+                texts.add(text);
+                hashes.add(hash);
+            }
+        }
+
+        if (changedIds.isEmpty()) {
+            return batch.size();
+        }
+
+        List<float[]> embeddings = embeddingService.generateEmbeddings(texts);
+
+        List<BookEmbeddingStore.Entry> entries = new ArrayList<>(changedIds.size());
+        for (int i = 0; i < changedIds.size(); i++) {
+            entries.add(new BookEmbeddingStore.Entry(changedIds.get(i), embeddings.get(i), hashes.get(i), modelId));
+        }
+        embeddingStore.saveAll(entries);
+
+        return batch.size() - changedIds.size();
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "embedding-pipeline-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Управление конвейером и получение контрольных точек
+     */
+    public interface Listener {
+
+        Listener NONE = new Listener() {
+        };
+
+        /**
+         * Проверяется перед отправкой каждого пакета
+         */
+        default boolean shouldStop() {
+            return false;
+        }
+
+        /**
+         * Все книги с id <= lastBookId успешно обработаны.
+         * Вызовы не пересекаются, но могут приходить из разных потоков
+         */
+        default void onCheckpoint(long lastBookId, long processed, long failed) {
+        }
+    }
+
+    /**
+     * Отслеживает завершение пакетов, которые могут финишировать не по порядку,
+     * и продвигает контрольную точку только по непрерывному префиксу успешных пакетов:
+     * на первом неудачном пакете она останавливается до конца запуска,
+     * чтобы продолжение задачи обработало его книги заново
+     */
+    private static final class Checkpoints {
+        private final TreeMap<Long, Long> pendingLastIds = new TreeMap<>();
+        private final Set<Long> completed = new HashSet<>();
+        private final AtomicBoolean publishing = new AtomicBoolean();
+        private long nextSequence;
+        private long watermark;
+        private long published;
+
+        Checkpoints(long startAfterId) {
+            this.watermark = startAfterId;
+            this.published = startAfterId;
+        }
+
+        synchronized long register(long lastBookId) {
+            long sequence = nextSequence++;
+            pendingLastIds.put(sequence, lastBookId);
+            return sequence;
+        }
+
+        synchronized void complete(long sequence, boolean succeeded) {
+            if (!succeeded) {
+                // Неудачный пакет остается незавершенным и держит контрольную точку
+                return;
+            }
+            completed.add(sequence);
+            while (!pendingLastIds.isEmpty() && completed.remove(pendingLastIds.firstKey())) {
+                watermark = pendingLastIds.pollFirstEntry().getValue();
+            }
+        }
+
+        /**
+         * Сообщает слушателю последнюю контрольную точку вне блокировки: запись в БД
+         * выполняет один поток, остальные не ждут его, а их точку он подхватит следующей итерацией
+         */
+        void publish(Listener listener, AtomicLong processed, AtomicLong failed) {
+            while (hasUnpublished() && publishing.compareAndSet(false, true)) {
+                try {
+                    long value;
+                    synchronized (this) {
+                        value = watermark;
+                        published = value;
+                    }
+                    listener.onCheckpoint(value, processed.get(), failed.get());
+                } catch (Exception e) {
+                    System.err.println("Ошибка сохранения контрольной точки: " + e.getMessage());
+                } finally {
+                    publishing.set(false);
+                }
+            }
+        }
+
+        private synchronized boolean hasUnpublished() {
+            return watermark != published;
+        }
+
+        synchronized long watermark() {
+            return watermark;
+        }
+    }
+
+    /**
+     * Книга для обработки и хеш ее текущего эмбеддинга (null, если эмбеддинга нет)
+     */
+    private record Candidate(Book book, String contentHash) {
+    }
+
+    /**
+     * Итог работы конвейера
+     *
+     * @param processed  обработано книг, включая пропущенные
+     * @param skipped    пропущено книг с неизменным хешем
+     * @param lastBookId контрольная точка, с которой можно продолжить (не дальше первого неудачного пакета)
+     * @param stopped    конвейер остановлен до конца каталога
+     */
+    public record Result(long processed, long failed, long skipped, long elapsedMillis, long lastBookId,
+                         boolean stopped) {
+
+        public double booksPerSecond() {
+            return elapsedMillis > 0 ? processed * 1000.0 / elapsedMillis : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("обработано %d (без изменений %d), ошибок %d, %.1f книг/сек",
+                    processed, skipped, failed, booksPerSecond());
+        }
+    }
+}
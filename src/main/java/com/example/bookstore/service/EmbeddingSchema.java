@@ -0,0 +1,343 @@
+package com.example.bookstore.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Тип и размерность столбца book_embedding.embedding
+ *
+ * bookstore.vector.storage-type:
+ * - vector (по умолчанию) → float32, 4 байта на координату
+ * - halfvec → float16, 2 байта: вдвое меньше таблица и HNSW-индекс
+ * bookstore.vector.dimension — размерность хранения (по умолчанию 1536). Меньшее значение —
+ * усечение в стиле Matryoshka: берутся первые координаты, вектор нормализуется заново.
+ *
+ * Flyway-миграции не знают настроек приложения, поэтому схему приводит к настройкам
+ * migrate(): при старте (bookstore.vector.schema.auto-migrate=true) или из админки.
+ *
+ * HNSW-индекс book_embedding_idx строится с bookstore.vector.pg.hnsw.m и ef-construction;
+ * rebuildIndex() перестраивает его с новыми параметрами без блокировки записи.
+ * Параметры хранятся в самом индексе (pg_class.reloptions): migrate() пересоздает индекс
+ * с теми же m и ef_construction, а настройки применяются, только если индекса еще нет.
+ */
+@Service
+public class EmbeddingSchema {
+
+    private static final Pattern COLUMN_TYPE = Pattern.compile("(\\w+)\\((\\d+)\\)");
+    private static final String INDEX_NAME = "book_embedding_idx";
+    private static final String NEW_INDEX_NAME = "book_embedding_idx_new";
+
+    // Ограничения pgvector на размерность для HNSW-индекса
+    private static final int MAX_VECTOR_INDEX_DIMENSION = 2000;
+    private static final int MAX_HALFVEC_INDEX_DIMENSION = 4000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookNeighborStore neighborStore;
+    private final String type;
+    private final int dimension;
+    private final boolean autoMigrate;
+    private final int m;
+    private final int efConstruction;
+    private final ExecutorService rebuildExecutor;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public EmbeddingSchema(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           BookNeighborStore neighborStore,
+                           @Value("${bookstore.vector.storage-type:vector}") String type,
+                           @Value("${bookstore.vector.dimension:1536}") int dimension,
+                           @Value("${bookstore.vector.schema.auto-migrate:false}") boolean autoMigrate,
+                           @Value("${bookstore.vector.pg.hnsw.m:16}") int m,
+                           @Value("${bookstore.vector.pg.hnsw.ef-construction:64}") int efConstruction) {
+        int maxDimension = switch (type) {
+            case "vector" -> MAX_VECTOR_INDEX_DIMENSION;
+            case "halfvec" -> MAX_HALFVEC_INDEX_DIMENSION;
+            default -> throw new IllegalArgumentException("Неизвестный тип хранения эмбеддингов: " + type);
+        };
+        if (dimension <= 0 || dimension > maxDimension) {
+            throw new IllegalArgumentException("Размерность " + dimension + " недопустима для HNSW-индекса по "
+                    + type + " (максимум " + maxDimension + ")");
+        }
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.neighborStore = neighborStore;
+        this.type = type;
+        this.dimension = dimension;
+        this.autoMigrate = autoMigrate;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        validateIndexParameters(m, efConstruction);
+
+        this.rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hnsw-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Тип столбца по настройкам, например halfvec(768)
+     */
+    public String getColumnType() {
+        return type + "(" + dimension + ")";
+    }
+
+    /**
+     * Фактический тип столбца в БД
+     */
+    public String getCurrentColumnType() {
+        List<String> rows = jdbcTemplate.queryForList("""
+                SELECT format_type(a.atttypid, a.atttypmod)
+                FROM pg_attribute a
+                WHERE a.attrelid = 'book_embedding'::regclass AND a.attname = 'embedding'
+                """, String.class);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public boolean isUpToDate() {
+        return getColumnType().equals(getCurrentColumnType());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void checkOnStartup() {
+        if (isUpToDate()) {
+            return;
+        }
+        if (autoMigrate) {
+            migrate();
+        } else {
+            System.err.println("⚠️ Столбец book_embedding.embedding имеет тип " + getCurrentColumnType()
+                    + ", а в настройках " + getColumnType() + ". Эмбеддинги другой размерности не попадут"
+                    + " в поиск; выполните миграцию в админке или включите bookstore.vector.schema.auto-migrate");
+        }
+    }
+
+    /**
+     * Приводит столбец и HNSW-индекс к настройкам в одной транзакции
+     * (таблица book_embedding заблокирована на время перестройки)
+     *
+     * - уменьшение размерности: первые dimension координат, заново нормализованные;
+     * - та же размерность: только смена типа;
+     * - увеличение размерности: эмбеддинги удаляются, их пересоздаст индексация
+     *
+     * @return false, если схема уже соответствует настройкам
+     */
+    public synchronized boolean migrate() {
+        if (rebuilding.get()) {
+            throw new IllegalStateException("Идет перестройка HNSW-индекса");
+        }
+        String current = getCurrentColumnType();
+        if (getColumnType().equals(current)) {
+            return false;
+        }
+        Matcher matcher = COLUMN_TYPE.matcher(current == null ? "" : current);
+        if (!matcher.matches()) {
+            throw new IllegalStateException("Неизвестный тип столбца book_embedding.embedding: " + current);
+        }
+        int currentDimension = Integer.parseInt(matcher.group(2));
+
+        long start = System.currentTimeMillis();
+        // Параметры, заданные через rebuildIndex(), не должны сбрасываться к настройкам
+        completeInterruptedRebuild();
+        HnswParameters parameters = currentIndexParameters();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("DROP INDEX IF EXISTS " + INDEX_NAME);
+
+            String using;
+            if (dimension < currentDimension) {
+                using = "l2_normalize(subvector(embedding::vector, 1, " + dimension + "))::" + getColumnType();
+            } else {
+                if (dimension > currentDimension) {
+                    int deleted = jdbcTemplate.update("DELETE FROM book_embedding");
+                    System.out.println("Удалено эмбеддингов меньшей размерности: " + deleted);
+                }
+                using = "embedding::vector::" + getColumnType();
+            }
+            jdbcTemplate.execute("ALTER TABLE book_embedding ALTER COLUMN embedding TYPE "
+                    + getColumnType() + " USING " + using);
+
+            jdbcTemplate.execute(createIndexSql(INDEX_NAME, false, parameters.m(), parameters.efConstruction()));
+        });
+        // Соседи посчитаны по старым векторам
+        neighborStore.invalidateAll();
+
+        System.out.println("✅ book_embedding.embedding: " + current + " → " + getColumnType()
+                + ", HNSW-индекс перестроен за " + (System.currentTimeMillis() - start) + " мс");
+        return true;
+    }
+
+    /**
+     * Определение текущего HNSW-индекса (CREATE INDEX ... WITH (m, ef_construction))
+     */
+    public String getIndexDefinition() {
+        List<String> rows = jdbcTemplate.queryForList(
+                "SELECT indexdef FROM pg_indexes WHERE tablename = 'book_embedding' AND indexname = ?",
+                String.class, INDEX_NAME);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+
+    /**
+     * Запускает в фоне перестройку HNSW-индекса с новыми параметрами
+     *
+     * Новый индекс строится CREATE INDEX CONCURRENTLY рядом со старым: поиск и запись
+     * продолжают работать, а старый индекс используется до конца построения.
+     * Затем старый удаляется (DROP INDEX CONCURRENTLY), новый получает его имя.
+     *
+     * @return false, если перестройка уже идет
+     */
+    public synchronized boolean rebuildIndex(int m, int efConstruction) {
+        validateIndexParameters(m, efConstruction);
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                try {
+                    doRebuildIndex(m, efConstruction);
+                } catch (Exception e) {
+                    System.err.println("Ошибка перестройки HNSW-индекса: " + e.getMessage());
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            rebuilding.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * CONCURRENTLY нельзя выполнять в транзакции: каждая команда идет отдельным autocommit-запросом
+     */
+    private void doRebuildIndex(int m, int efConstruction) {
+        long start = System.currentTimeMillis();
+        completeInterruptedRebuild();
+
+        try {
+            jdbcTemplate.execute(createIndexSql(NEW_INDEX_NAME, true, m, efConstruction));
+        } catch (RuntimeException e) {
+            // Прерванный CREATE INDEX CONCURRENTLY оставляет невалидный индекс; старый не тронут
+            dropQuietly(NEW_INDEX_NAME);
+            throw e;
+        }
+
+        // Дальше новый индекс не удаляется: если удаление старого или переименование не удастся,
+        // поиск пойдет по новому, а замену завершит completeInterruptedRebuild()
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+        jdbcTemplate.execute("ALTER INDEX " + NEW_INDEX_NAME + " RENAME TO " + INDEX_NAME);
+
+        System.out.println("✅ HNSW-индекс перестроен (m=" + m + ", ef_construction=" + efConstruction
+                + ") за " + (System.currentTimeMillis() - start) + " мс");
+    }
+
+    /**
+     * Доводит до конца замену индекса, прерванную после построения нового:
+     * невалидный новый индекс удаляется, валидный занимает место старого
+     */
+    private void completeInterruptedRebuild() {
+        List<Boolean> valid = jdbcTemplate.queryForList("""
+                SELECT i.indisvalid FROM pg_index i
+                JOIN pg_class c ON c.oid = i.indexrelid
+                WHERE c.relname = ?
+                """, Boolean.class, NEW_INDEX_NAME);
+        if (valid.isEmpty()) {
+            return;
+        }
+        if (!valid.get(0)) {
+            dropQuietly(NEW_INDEX_NAME);
+            return;
+        }
+        jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+        jdbcTemplate.execute("ALTER INDEX " + NEW_INDEX_NAME + " RENAME TO " + INDEX_NAME);
+        System.out.println("HNSW-индекс: завершена прерванная замена " + NEW_INDEX_NAME + " → " + INDEX_NAME);
+    }
+
+    /**
+     * m и ef_construction существующего индекса; настройки — если индекса нет
+     * или параметр в нем не задан
+     */
+    private HnswParameters currentIndexParameters() {
+        int currentM = m;
+        int currentEfConstruction = efConstruction;
+        List<String> options = jdbcTemplate.queryForList(
+                "SELECT unnest(reloptions) FROM pg_class WHERE relname = ?", String.class, INDEX_NAME);
+        for (String option : options) {
+            int separator = option.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String name = option.substring(0, separator);
+            int value = Integer.parseInt(option.substring(separator + 1));
+            if (name.equals("m")) {
+                currentM = value;
+            } else if (name.equals("ef_construction")) {
+                currentEfConstruction = value;
+            }
+        }
+        return new HnswParameters(currentM, currentEfConstruction);
+    }
+
+    private void dropQuietly(String indexName) {
+        try {
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + indexName);
+        } catch (Exception e) {
+            System.err.println("Не удалось удалить индекс " + indexName + ": " + e.getMessage());
+        }
+    }
+
+    private String createIndexSql(String indexName, boolean concurrently, int m, int efConstruction) {
+        return "CREATE INDEX " + (concurrently ? "CONCURRENTLY " : "") + indexName
+                + " ON book_embedding USING hnsw (embedding " + type + "_cosine_ops)"
+                + " WITH (m = " + m + ", ef_construction = " + efConstruction + ")";
+    }
+
+    /**
+     * Ограничения pgvector: m от 2 до 100, ef_construction от 4 до 1000 и не меньше 2 * m
+     */
+    private static void validateIndexParameters(int m, int efConstruction) {
+        if (m < 2 || m > 100) {
+            throw new IllegalArgumentException("Параметр m должен быть от 2 до 100: " + m);
+        }
+        if (efConstruction < 2 * m || efConstruction > 1000) {
+            throw new IllegalArgumentException("Параметр ef_construction должен быть от 2 * m до 1000: " + efConstruction);
+        }
+    }
+
+    private record HnswParameters(int m, int efConstruction) {
+    }
+}
@@ -1,24 +1,64 @@
 package com.example.bookstore.service;
 
 import chat.giga.springai.api.chat.GigaChatApi;
-import com.example.bookstore.model.Book;
+import com.example.bookstore.util.VectorKernels;
+import com.example.bookstore.util.VectorUtils;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 
+/**
+ * Эмбеддинги книг и поисковых запросов
+ *
+ * bookstore.embedding.provider:
+ * - hash (по умолчанию) → детерминированный вектор по хешу текста, считается локально
+ * - model → настроенный EmbeddingModel; пакет текстов уходит в модель одним запросом
+ */
 @Service
 public class EmbeddingService {
 
+    private static final int MAX_TEXT_LENGTH = 8000;
+
     private final ChatModel chatModel;
+    private final EmbeddingModel embeddingModel;
     private final Random random = new Random(42); // Фиксированный seed для воспроизводимости
+    private final int dimension;
 
-    public EmbeddingService(ChatModel chatModel) {
+    public EmbeddingService(ChatModel chatModel,
+                            ObjectProvider<EmbeddingModel> embeddingModelProvider,
+                            @Value("${bookstore.vector.dimension:1536}") int dimension,
+                            @Value("${bookstore.embedding.provider:hash}") String provider) {
         this.chatModel = chatModel;
+        this.dimension = dimension;
+        this.embeddingModel = switch (provider) {
+            case "hash" -> null;
+            case "model" -> {
+                EmbeddingModel model = embeddingModelProvider.getIfAvailable();
+                if (model == null) {
+                    throw new IllegalStateException("bookstore.embedding.provider=model, но EmbeddingModel не настроен");
+                }
+                yield model;
+            }
+            default -> throw new IllegalArgumentException("Неизвестный источник эмбеддингов: " + provider);
+        };
+    }
+
+    /**
+     * Идентификатор модели эмбеддингов: хранится рядом с вектором,
+     * смена модели приводит к переиндексации
+     */
+    public String getModelId() {
+        return embeddingModel != null
+                ? embeddingModel.getClass().getSimpleName() + "-" + dimension
+                : "hash-v1-" + dimension;
     }
 
     /**
@@ -28,7 +68,11 @@ public class EmbeddingService {
     public float[] generateEmbedding(String text) {
         try {
             if (text == null || text.isBlank()) {
-                return new float[1536];
+                return new float[dimension];
+            }
+
+            if (embeddingModel != null) {
+                return embedWithModel(List.of(text)).get(0);
             }
 
             // Вариант A: Простой хеш-вектор (быстро, но менее точно)
@@ -39,7 +83,7 @@ public class EmbeddingService {
 
         } catch (Exception e) {
             System.err.println("Ошибка генерации эмбеддинга: " + e.getMessage());
-            return new float[1536];
+            return new float[dimension];
         }
     }
 
@@ -48,14 +92,14 @@ public class EmbeddingService {
      * Детерминированный и быстрый метод
      */
     private float[] generateHashBasedEmbedding(String text) {
-        float[] embedding = new float[1536];
+        float[] embedding = new float[dimension];
 
         // Используем хеш текста как seed
         int seed = text.hashCode();
         Random rng = new Random(seed);
 
         // Генерируем псевдослучайный вектор
-        for (int i = 0; i < 1536; i++) {
+        for (int i = 0; i < dimension; i++) {
             embedding[i] = (rng.nextFloat() - 0.5f) * 2.0f; // От -1 до 1
         }
 
@@ -106,8 +150,8 @@ public class EmbeddingService {
             int combinedSeed = (text.hashCode() + response.hashCode()) / 2;
             Random rng = new Random(combinedSeed);
 
-            float[] embedding = new float[1536];
-            for (int i = 0; i < 1536; i++) {
+            float[] embedding = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
                 embedding[i] = (rng.nextFloat() - 0.5f) * 2.0f;
             }
 
@@ -130,57 +174,58 @@ public class EmbeddingService {
         }
     }
 
-    public void generateEmbeddingForBook(Book book) {
-        String text = book.getTextForEmbedding();
-        float[] embedding = generateEmbedding(text);
-        book.setEmbedding(embedding);
+    /**
+     * Пакетная генерация эмбеддингов: один вектор на каждый текст, в том же порядке
+     *
+     * С EmbeddingModel — один запрос к модели на весь пакет (ошибка модели пробрасывается,
+     * чтобы конвейер пометил пакет как неудачный). Хеш-векторы считаются по одному:
+     * обращений к модели у них нет, и объединять нечего.
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        if (embeddingModel != null) {
+            return embedWithModel(texts);
+        }
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            embeddings.add(generateEmbedding(text));
+        }
+        return embeddings;
     }
 
-    public void generateEmbeddingsForBooks(List<Book> books) {
-        int total = books.size();
-        int processed = 0;
-
-        System.out.println("Начинаем генерацию эмбеддингов для " + total + " книг...");
-
-        for (Book book : books) {
-            try {
-                generateEmbeddingForBook(book);
-                processed++;
-
-                if (processed % 10 == 0) {
-                    System.out.println("Обработано " + processed + " из " + total + " книг");
-                }
-
-                // Небольшая задержка только для ChatModel варианта
-                // Thread.sleep(100);
-
-            } catch (Exception e) {
-                System.err.println("Ошибка обработки книги " + book.getId() + ": " + e.getMessage());
+    /**
+     * Пустые тексты в модель не отправляются: для них, как и в generateEmbedding, нулевой вектор
+     */
+    private List<float[]> embedWithModel(List<String> texts) {
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        List<Integer> positions = new ArrayList<>(texts.size());
+        List<String> truncatedTexts = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            if (text == null || text.isBlank()) {
+                embeddings.add(new float[dimension]);
+                continue;
             }
+            positions.add(embeddings.size());
+            embeddings.add(null);
+            truncatedTexts.add(text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
         }
-
-        System.out.println("Генерация эмбеддингов завершена: " + processed + "/" + total);
-    }
-
-    public double cosineSimilarity(float[] vec1, float[] vec2) {
-        if (vec1 == null || vec2 == null || vec1.length != vec2.length) {
-            return 0.0;
+        if (truncatedTexts.isEmpty()) {
+            return embeddings;
         }
 
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-
-        for (int i = 0; i < vec1.length; i++) {
-            dotProduct += vec1[i] * vec2[i];
-            norm1 += vec1[i] * vec1[i];
-            norm2 += vec2[i] * vec2[i];
+        EmbeddingResponse response = embeddingModel.embedForResponse(truncatedTexts);
+        if (response == null || response.getResults().size() != truncatedTexts.size()) {
+            throw new IllegalStateException("Модель вернула неполный ответ для пакета из "
+                    + truncatedTexts.size() + " текстов");
         }
 
-        if (norm1 == 0.0 || norm2 == 0.0) {
-            return 0.0;
+        for (int i = 0; i < positions.size(); i++) {
+            // Приводим к размерности хранения (усечение с нормализацией или дополнение нулями)
+            embeddings.set(positions.get(i), VectorUtils.fitDimension(response.getResults().get(i).getOutput(), dimension));
         }
+        return embeddings;
+    }
 
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+    public double cosineSimilarity(float[] vec1, float[] vec2) {
+        return VectorKernels.cosineSimilarity(vec1, vec2);
     }
 }
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.util.RankFusion;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Гибридный поиск: векторный (ANN) и лексический (полнотекстовый) поиск
+ * выполняются параллельно, результаты объединяются через Reciprocal Rank Fusion
+ *
+ * Время ответа определяется самым медленным из двух поисков, а не их суммой.
+ * Книга, найденная только одним способом, тоже попадает в выдачу.
+ */
+@Service
+public class HybridSearchService {
+
+    private final VectorSearchService vectorSearchService;
+    private final KeywordSearchService keywordSearchService;
+    private final ExecutorService executor;
+
+    private final int candidates;
+    private final int rrfK;
+    private final double[] weights;
+
+    public HybridSearchService(VectorSearchService vectorSearchService,
+                               KeywordSearchService keywordSearchService,
+                               @Value("${bookstore.search.hybrid.candidates:50}") int candidates,
+                               @Value("${bookstore.search.hybrid.rrf-k:60}") int rrfK,
+                               @Value("${bookstore.search.hybrid.vector-weight:1.0}") double vectorWeight,
+                               @Value("${bookstore.search.hybrid.keyword-weight:1.0}") double keywordWeight,
+                               @Value("${bookstore.search.hybrid.parallelism:8}") int parallelism) {
+        this.vectorSearchService = vectorSearchService;
+        this.keywordSearchService = keywordSearchService;
+        this.candidates = Math.max(1, candidates);
+        this.rrfK = rrfK;
+        this.weights = new double[]{vectorWeight, keywordWeight};
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "hybrid-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Топ-limit книг по объединенному рейтингу
+     */
+    public List<Book> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        int depth = Math.max(candidates, limit);
+
+        // Лексический поиск — в пуле, векторный — в текущем потоке
+        CompletableFuture<List<Long>> lexical = CompletableFuture.supplyAsync(
+                leg("лексический", () -> bookIds(keywordSearchService.search(query, 0, depth))), executor);
+        List<Long> vector = leg("векторный", () -> vectorSearchService.semanticSearchIds(query, depth)).get();
+
+        List<Long> fused = RankFusion.fuse(List.of(vector, lexical.join()), weights, rrfK, limit);
+        return vectorSearchService.findBooksByIds(fused);
+    }
+
+    /**
+     * Ошибка одного из поисков не должна ломать выдачу второго
+     */
+    private static Supplier<List<Long>> leg(String name, Supplier<List<Long>> search) {
+        return () -> {
+            try {
+                return search.get();
+            } catch (Exception e) {
+                System.err.println("Ошибка гибридного поиска (" + name + "): " + e.getMessage());
+                return List.of();
+            }
+        };
+    }
+
+    private static List<Long> bookIds(List<Book> books) {
+        List<Long> ids = new ArrayList<>(books.size());
+        for (Book book : books) {
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,360 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.JobProgress;
+import com.example.bookstore.model.IndexingJob;
+import com.example.bookstore.model.IndexingJob.JobStatus;
+import com.example.bookstore.model.IndexingJob.JobType;
+import com.example.bookstore.repository.IndexingJobRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Управление фоновыми задачами индексации
+ *
+ * - не больше одной задачи каждого типа одновременно (single-flight) на всех экземплярах:
+ *   экземпляр захватывает задачу в БД (owner, heartbeat_at) и продлевает захват, пока она идет
+ * - прогресс сохраняется в indexing_job, после перезапуска задача продолжается с last_book_id;
+ *   задачу упавшего экземпляра продолжает другой, когда истекает job-lease
+ * - пауза и отмена останавливают конвейер на границе пакета (на экземпляре, где задача выполняется)
+ */
+@Service
+public class IndexingJobService {
+
+    private static final long CHECKPOINT_INTERVAL_MILLIS = 1000;
+
+    // Захват свободной задачи, своей или задачи экземпляра, который перестал продлевать захват
+    private static final String CLAIM_SQL = """
+            UPDATE indexing_job SET owner = ?, heartbeat_at = now()
+            WHERE id = ? AND status IN ('RUNNING', 'PAUSED')
+              AND (owner IS NULL OR owner = ? OR heartbeat_at < now() - make_interval(secs => ?))
+            """;
+
+    private final EmbeddingPipeline pipeline;
+    private final IndexingJobRepository jobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final BookNeighborRefresher neighborRefresher;
+    private final Map<JobType, RunningJob> active = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final ScheduledExecutorService heartbeat;
+    // Идентификатор этого экземпляра (новый при каждом запуске)
+    private final String owner = UUID.randomUUID().toString();
+    private final Duration lease;
+
+    public IndexingJobService(EmbeddingPipeline pipeline, IndexingJobRepository jobRepository,
+                              JdbcTemplate jdbcTemplate, BookNeighborRefresher neighborRefresher,
+                              @Value("${bookstore.indexing.job-lease:60s}") Duration lease) {
+        this.pipeline = pipeline;
+        this.jobRepository = jobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.neighborRefresher = neighborRefresher;
+        this.lease = lease;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(JobType.values().length, runnable -> {
+            Thread thread = new Thread(runnable, "indexing-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Продление захвата своих задач и подхват задач, брошенных другими экземплярами
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "indexing-job-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, lease.toMillis() / 3);
+        heartbeat.scheduleWithFixedDelay(() -> {
+            try {
+                jdbcTemplate.update("UPDATE indexing_job SET heartbeat_at = now() WHERE owner = ?", owner);
+                resumeInterruptedJobs();
+            } catch (Exception e) {
+                System.err.println("Ошибка продления задач индексации: " + e.getMessage());
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Запускает задачу или продолжает приостановленную.
+     * Возвращает false, если задача этого типа уже выполняется.
+     */
+    public synchronized boolean start(JobType type) {
+        if (active.containsKey(type)) {
+            return false;
+        }
+
+        IndexingJob job = jobRepository
+                .findFirstByJobTypeAndStatusIn(type, List.of(JobStatus.RUNNING, JobStatus.PAUSED))
+                .orElse(null);
+
+        if (job == null) {
+            try {
+                // Уникальный индекс idx_indexing_job_active не даст второму экземпляру создать такую же задачу
+                job = jobRepository.save(IndexingJob.builder()
+                        .jobType(type)
+                        .status(JobStatus.RUNNING)
+                        .total(pipeline.countRemaining(isOnlyMissing(type), 0))
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                return false;
+            }
+            if (!claim(job)) {
+                return false;
+            }
+        } else {
+            // Выполняется на другом экземпляре
+            if (!claim(job)) {
+                return false;
+            }
+            job.setStatus(JobStatus.RUNNING);
+            job.setUpdatedAt(LocalDateTime.now());
+            job = jobRepository.save(job);
+        }
+
+        launch(job);
+        return true;
+    }
+
+    /**
+     * Приостанавливает задачу на границе пакета; контрольная точка сохраняется
+     */
+    public boolean pause(JobType type) {
+        RunningJob running = active.get(type);
+        if (running == null) {
+            return false;
+        }
+        running.pauseRequested = true;
+        return true;
+    }
+
+    /**
+     * Отменяет выполняющуюся или приостановленную задачу
+     */
+    public synchronized boolean cancel(JobType type) {
+        RunningJob running = active.get(type);
+        if (running != null) {
+            running.cancelRequested = true;
+            return true;
+        }
+
+        return jobRepository.findFirstByJobTypeAndStatusIn(type, List.of(JobStatus.PAUSED))
+                .map(job -> {
+                    job.setStatus(JobStatus.CANCELLED);
+                    job.setUpdatedAt(LocalDateTime.now());
+                    job.setFinishedAt(job.getUpdatedAt());
+                    jobRepository.save(job);
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    /**
+     * Текущее состояние последней задачи каждого типа
+     */
+    public List<JobProgress> getProgress() {
+        List<JobProgress> progress = new ArrayList<>();
+        for (JobType type : JobType.values()) {
+            RunningJob running = active.get(type);
+            if (running != null) {
+                progress.add(running.snapshot());
+            } else {
+                jobRepository.findFirstByJobTypeOrderByCreatedAtDesc(type)
+                        .map(IndexingJobService::toProgress)
+                        .ifPresent(progress::add);
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Продолжает задачи, прерванные остановкой приложения
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterruptedJobs() {
+        for (IndexingJob job : jobRepository.findByStatus(JobStatus.RUNNING)) {
+            if (!active.containsKey(job.getJobType()) && claim(job)) {
+                System.out.println("Продолжаем задачу индексации " + job.getJobType()
+                        + " с книги id > " + job.getLastBookId());
+                launch(job);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // Статус RUNNING в БД сохраняется: после перезапуска (или на другом экземпляре) задача продолжится
+        heartbeat.shutdownNow();
+        executor.shutdownNow();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+        jdbcTemplate.update("UPDATE indexing_job SET owner = NULL, heartbeat_at = NULL WHERE owner = ?", owner);
+    }
+
+    /**
+     * Захватывает задачу для этого экземпляра; false — ее выполняет другой живой экземпляр
+     */
+    private boolean claim(IndexingJob job) {
+        return jdbcTemplate.update(CLAIM_SQL, owner, job.getId(), owner, lease.toSeconds()) == 1;
+    }
+
+    private void launch(IndexingJob job) {
+        RunningJob running = new RunningJob(job);
+        active.put(job.getJobType(), running);
+        executor.execute(() -> execute(running));
+    }
+
+    private void execute(RunningJob running) {
+        IndexingJob job = running.job;
+        JobStatus finalStatus;
+        String errorMessage = null;
+        long lastBookId = job.getLastBookId();
+
+        // Похожие книги пересчитываются одним проходом после полной переиндексации
+        boolean bulk = job.getJobType() == JobType.REINDEX_ALL;
+        boolean completed = false;
+        if (bulk) {
+            neighborRefresher.beginBulkUpdate();
+        }
+        try {
+            EmbeddingPipeline.Result result = pipeline.run(isOnlyMissing(job.getJobType()), job.getLastBookId(), running);
+            lastBookId = result.lastBookId();
+
+            if (!result.stopped()) {
+                finalStatus = JobStatus.COMPLETED;
+                completed = true;
+            } else if (running.cancelRequested) {
+                finalStatus = JobStatus.CANCELLED;
+            } else if (running.pauseRequested) {
+                finalStatus = JobStatus.PAUSED;
+            } else {
+                // Прерывание при остановке приложения: продолжим после перезапуска
+                finalStatus = JobStatus.RUNNING;
+            }
+        } catch (Exception e) {
+            System.err.println("Ошибка задачи индексации " + job.getJobType() + ": " + e.getMessage());
+            finalStatus = JobStatus.FAILED;
+            errorMessage = e.getMessage();
+            lastBookId = running.lastBookId;
+        } finally {
+            if (bulk) {
+                neighborRefresher.endBulkUpdate(completed);
+            }
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            job.setStatus(finalStatus);
+            job.setLastBookId(lastBookId);
+            job.setProcessed(running.baseProcessed + running.processed);
+            job.setFailed(running.baseFailed + running.failed);
+            job.setErrorMessage(errorMessage);
+            job.setUpdatedAt(now);
+            if (finalStatus == JobStatus.COMPLETED || finalStatus == JobStatus.CANCELLED
+                    || finalStatus == JobStatus.FAILED) {
+                job.setFinishedAt(now);
+            }
+            jobRepository.save(job);
+            jdbcTemplate.update("UPDATE indexing_job SET owner = NULL, heartbeat_at = NULL WHERE id = ? AND owner = ?",
+                    job.getId(), owner);
+        } finally {
+            active.remove(job.getJobType(), running);
+        }
+    }
+
+    private static boolean isOnlyMissing(JobType type) {
+        return type == JobType.INDEX_MISSING;
+    }
+
+    private static JobProgress toProgress(IndexingJob job) {
+        return JobProgress.builder()
+                .jobId(job.getId())
+                .jobType(job.getJobType())
+                .status(job.getStatus())
+                .processed(job.getProcessed())
+                .failed(job.getFailed())
+                .total(job.getTotal())
+                .lastBookId(job.getLastBookId())
+                .errorMessage(job.getErrorMessage())
+                .updatedAt(job.getUpdatedAt())
+                .build();
+    }
+
+    /**
+     * Выполняющаяся задача: флаги управления и живой прогресс
+     */
+    private final class RunningJob implements EmbeddingPipeline.Listener {
+        private final IndexingJob job;
+        private final long baseProcessed;
+        private final long baseFailed;
+        private final long startedAtNanos = System.nanoTime();
+
+        private volatile boolean pauseRequested;
+        private volatile boolean cancelRequested;
+        private volatile long processed;
+        private volatile long failed;
+        private volatile long lastBookId;
+        private long lastPersistedAt;
+
+        RunningJob(IndexingJob job) {
+            this.job = job;
+            this.baseProcessed = job.getProcessed();
+            this.baseFailed = job.getFailed();
+            this.lastBookId = job.getLastBookId();
+        }
+
+        @Override
+        public boolean shouldStop() {
+            return pauseRequested || cancelRequested || Thread.currentThread().isInterrupted();
+        }
+
+        @Override
+        public void onCheckpoint(long lastBookId, long processed, long failed) {
+            this.lastBookId = lastBookId;
+            this.processed = processed;
+            this.failed = failed;
+
+            long now = System.currentTimeMillis();
+            if (now - lastPersistedAt >= CHECKPOINT_INTERVAL_MILLIS) {
+                lastPersistedAt = now;
+                jobRepository.saveCheckpoint(job.getId(), lastBookId,
+                        baseProcessed + processed, baseFailed + failed, LocalDateTime.now());
+            }
+        }
+
+        JobProgress snapshot() {
+            double elapsedSeconds = (System.nanoTime() - startedAtNanos) / 1_000_000_000.0;
+            double rate = elapsedSeconds > 0 ? processed / elapsedSeconds : 0.0;
+            long done = baseProcessed + processed + baseFailed + failed;
+            long remaining = Math.max(0, job.getTotal() - done);
+
+            return JobProgress.builder()
+                    .jobId(job.getId())
+                    .jobType(job.getJobType())
+                    .status(JobStatus.RUNNING)
+                    .processed(baseProcessed + processed)
+                    .failed(baseFailed + failed)
+                    .total(job.getTotal())
+                    .lastBookId(lastBookId)
+                    .booksPerSecond(rate)
+                    .etaSeconds(rate > 0 ? (long) Math.ceil(remaining / rate) : null)
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
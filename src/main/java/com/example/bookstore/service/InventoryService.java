@@ -0,0 +1,116 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.util.RetryPolicy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Складские остатки
+ *
+ * Остаток меняется только относительными атомарными UPDATE (stock = stock ± n)
+ * и не входит в версионируемое состояние Book: правки каталога и заказы
+ * не перезаписывают друг друга. Операции выполняются в отдельной транзакции
+ * с повтором при конфликтах (deadlock, таймаут блокировки).
+ */
+@Service
+public class InventoryService {
+
+    // Условное списание: строка обновится, только если на складе хватает товара
+    private static final String RESERVE_STOCK_SQL =
+            "UPDATE book SET stock = stock - ? WHERE id = ? AND stock >= ?";
+    private static final String RELEASE_STOCK_SQL =
+            "UPDATE book SET stock = stock + ? WHERE id = ?";
+    private static final String ADJUST_STOCK_SQL =
+            "UPDATE book SET stock = stock + ? WHERE id = ? AND stock + ? >= 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryPolicy retryPolicy;
+
+    public InventoryService(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${bookstore.inventory.retry.max-attempts:3}") int maxAttempts,
+                            @Value("${bookstore.inventory.retry.backoff:20ms}") Duration backoff) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.retryPolicy = new RetryPolicy(maxAttempts, backoff.toMillis());
+    }
+
+    /**
+     * Выполняет действие в транзакции, повторяя его целиком при конфликте параллельного доступа
+     */
+    public <T> T inTransaction(TransactionCallback<T> action) {
+        return retryPolicy.execute(() -> transactionTemplate.execute(action));
+    }
+
+    /**
+     * Атомарно списывает товар одним JDBC-пакетом в порядке id (без взаимных блокировок)
+     * Вызывается внутри транзакции
+     *
+     * @return id первой книги, которой не хватило, или null, если списано все
+     */
+    public Long reserve(SortedMap<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        List<Long> ids = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            args.add(new Object[]{entry.getValue(), entry.getKey(), entry.getValue()});
+            ids.add(entry.getKey());
+        }
+
+        int[] updated = jdbcTemplate.batchUpdate(RESERVE_STOCK_SQL, args);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                return ids.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Возвращает товар на склад одним JDBC-пакетом в порядке id
+     * Вызывается внутри транзакции
+     */
+    public void release(SortedMap<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            args.add(new Object[]{entry.getValue(), entry.getKey()});
+        }
+        jdbcTemplate.batchUpdate(RELEASE_STOCK_SQL, args);
+    }
+
+    /**
+     * Изменяет остаток на delta (правка администратора)
+     * Параллельные заказы между открытием формы и сохранением не теряются
+     */
+    public void adjustStock(Long bookId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        inTransaction(status -> {
+            adjust(bookId, delta);
+            return null;
+        });
+    }
+
+    /**
+     * Изменяет остаток на delta в текущей транзакции (вместе с правкой книги)
+     * При отрицательном результате бросает исключение, и транзакция откатывается целиком
+     */
+    public void adjust(Long bookId, int delta) {
+        if (delta == 0) {
+            return;
+        }
+        if (jdbcTemplate.update(ADJUST_STOCK_SQL, delta, bookId, delta) == 0) {
+            throw new RuntimeException("Остаток книги " + bookId + " не может стать отрицательным");
+        }
+    }
+}
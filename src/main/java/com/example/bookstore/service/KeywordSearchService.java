@@ -0,0 +1,82 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.model.Book;
+import com.example.bookstore.repository.BookRows;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Лексический поиск книг средствами Postgres
+ *
+ * 1. Полнотекстовый поиск по book.search_vector (GIN, V11) с ранжированием ts_rank;
+ *    запрос разбирается websearch_to_tsquery в русской и английской конфигурациях,
+ *    а также в simple без стемминга — автор проиндексирован как есть (to_tsvector('simple'))
+ * 2. Если полнотекстовый поиск ничего не нашел (опечатка, часть слова) —
+ *    нечеткий поиск по названию и автору через триграммы (pg_trgm, V10)
+ */
+@Service
+public class KeywordSearchService {
+
+    private static final String TS_QUERY = "(websearch_to_tsquery('russian', :q)"
+            + " || websearch_to_tsquery('english', :q)"
+            + " || websearch_to_tsquery('simple', :q))";
+
+    private static final String FULL_TEXT_SQL = "SELECT " + BookRows.COLUMNS + " FROM book"
+            + " WHERE search_vector @@ " + TS_QUERY
+            + " ORDER BY ts_rank(search_vector, " + TS_QUERY + ") DESC, id"
+            + " LIMIT :limit OFFSET :offset";
+
+    // <% — word_similarity: запрос похож на какое-либо слово в названии или имени автора
+    private static final String TRIGRAM_SQL = "SELECT " + BookRows.COLUMNS + " FROM book"
+            + " WHERE :lq <% LOWER(title) OR :lq <% LOWER(author)"
+            + " ORDER BY GREATEST(word_similarity(:lq, LOWER(title)), word_similarity(:lq, LOWER(author))) DESC, id"
+            + " LIMIT :limit OFFSET :offset";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public KeywordSearchService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Страница книг, отсортированных по текстовой релевантности
+     *
+     * @param page номер страницы с нуля
+     */
+    public List<Book> search(String query, int page, int size) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("q", query.trim())
+                .addValue("lq", query.trim().toLowerCase())
+                .addValue("limit", size)
+                .addValue("offset", (long) Math.max(0, page) * size);
+
+        try {
+            List<Book> books = jdbcTemplate.query(FULL_TEXT_SQL, params, BookRows.MAPPER);
+            if (!books.isEmpty() || (page > 0 && hasFullTextMatches(params))) {
+                return books;
+            }
+            return jdbcTemplate.query(TRIGRAM_SQL, params, BookRows.MAPPER);
+
+        } catch (Exception e) {
+            System.err.println("Ошибка текстового поиска: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Есть ли полнотекстовые совпадения — чтобы страницы не переключались между режимами
+     */
+    private boolean hasFullTextMatches(MapSqlParameterSource params) {
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM book WHERE search_vector @@ " + TS_QUERY + ")",
+                params, Boolean.class);
+        return Boolean.TRUE.equals(exists);
+    }
+}
@@ -1,35 +1,124 @@
 package com.example.bookstore.service;
 
+import com.example.bookstore.dto.BookAvailability;
 import com.example.bookstore.dto.CartItem;
-import com.example.bookstore.model.Book;
+import com.example.bookstore.dto.OrderHistoryPage;
+import com.example.bookstore.dto.OrderSummary;
 import com.example.bookstore.model.Order;
 import com.example.bookstore.model.OrderItem;
 import com.example.bookstore.model.User;
 import com.example.bookstore.repository.BookRepository;
 import com.example.bookstore.repository.OrderRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
     private final OrderRepository orderRepository;
     private final BookRepository bookRepository;
-
-    public OrderService(OrderRepository orderRepository, BookRepository bookRepository) {
+    private final InventoryService inventoryService;
+    private final StockReservationService reservations;
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderService(OrderRepository orderRepository, BookRepository bookRepository,
+                        InventoryService inventoryService,
+                        ObjectProvider<StockReservationService> reservationsProvider,
+                        JdbcTemplate jdbcTemplate) {
         this.orderRepository = orderRepository;
         this.bookRepository = bookRepository;
+        this.inventoryService = inventoryService;
+        this.reservations = reservationsProvider.getIfAvailable();
+        this.jdbcTemplate = jdbcTemplate;
     }
 
-    @Transactional
+    /**
+     * Оформление заказа в отдельной транзакции; при deadlock или таймауте блокировки
+     * транзакция повторяется целиком (ошибки вида "нет товара" не повторяются)
+     *
+     * Если включено резервирование в памяти, товар резервируется в StockReservationService
+     * до транзакции из доли остатка этого экземпляра — строки book не блокируются.
+     * Резерв подтверждается внутри транзакции заказа, и продажа записывается в той же
+     * транзакции (stock_sale), так что сохраненный заказ всегда учтен в БД. Если резерв
+     * успел истечь, товар списывается из book.stock, и при нехватке заказ не создается.
+     */
     public Order createOrder(User user, List<CartItem> cartItems,
                              String deliveryAddress, String phone, String email) {
         if (cartItems == null || cartItems.isEmpty()) {
             throw new RuntimeException("Корзина пуста");
         }
 
+        // Количество по каждой книге; TreeMap — строки блокируются в порядке id, без взаимных блокировок
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
+        for (CartItem cartItem : cartItems) {
+            quantities.merge(cartItem.getBookId(), cartItem.getQuantity(), Integer::sum);
+        }
+
+        if (reservations == null) {
+            return inventoryService.inTransaction(status ->
+                    doCreateOrder(user, cartItems, quantities, deliveryAddress, phone, email, true));
+        }
+
+        String holdId = UUID.randomUUID().toString();
+        Long missing = reservations.reserve(holdId, quantities);
+        if (missing != null) {
+            throw new RuntimeException("Недостаточно товара на складе: " + titleOf(missing));
+        }
+
+        // Резерв подтверждается в транзакции заказа; флаг переживает повтор транзакции
+        boolean[] confirmed = {false};
+        try {
+            return inventoryService.inTransaction(status -> {
+                Order order = doCreateOrder(user, cartItems, quantities, deliveryAddress, phone, email, false);
+                if (!confirmed[0]) {
+                    confirmed[0] = reservations.confirm(holdId);
+                }
+                if (confirmed[0]) {
+                    reservations.recordSale(quantities);
+                } else {
+                    // Резерв истек, пока сохранялся заказ: списываем в БД в этой же транзакции,
+                    // при нехватке заказ откатывается
+                    Long shortage = inventoryService.reserve(quantities);
+                    if (shortage != null) {
+                        throw new RuntimeException("Недостаточно товара на складе: " + titleOf(shortage));
+                    }
+                }
+                return order;
+            });
+        } catch (RuntimeException e) {
+            if (confirmed[0]) {
+                // Заказ и запись о продаже откатились — товар возвращается в долю экземпляра
+                reservations.cancelSale(quantities);
+            } else {
+                reservations.release(holdId);
+            }
+            throw e;
+        }
+    }
+
+    private String titleOf(Long bookId) {
+        return bookRepository.findAvailability(List.of(bookId)).stream()
+                .map(BookAvailability::getTitle)
+                .findFirst()
+                .orElse(String.valueOf(bookId));
+    }
+
+    private Order doCreateOrder(User user, List<CartItem> cartItems, SortedMap<Long, Integer> quantities,
+                                String deliveryAddress, String phone, String email, boolean reserveInDb) {
         Order order = Order.builder()
                 .user(user)
                 .deliveryAddress(deliveryAddress)
@@ -38,62 +127,124 @@ public class OrderService {
                 .status(Order.OrderStatus.PENDING)
                 .build();
 
+        // Текущие цены и остатки всех книг заказа одним запросом (та же проекция, что при проверке корзины)
+        Map<Long, BookAvailability> books = bookRepository.findAvailability(quantities.keySet()).stream()
+                .collect(Collectors.toMap(BookAvailability::getId, Function.identity()));
+        for (Long bookId : quantities.keySet()) {
+            if (!books.containsKey(bookId)) {
+                throw new RuntimeException("Книга не найдена: " + bookId);
+            }
+        }
+
+        // Проверка и списание одним UPDATE ... WHERE stock >= ?: параллельные заказы не продадут больше, чем есть.
+        // Если хотя бы одной книги не хватает, исключение откатывает всю транзакцию
+        if (reserveInDb) {
+            Long missing = inventoryService.reserve(quantities);
+            if (missing != null) {
+                throw new RuntimeException("Недостаточно товара на складе: " + books.get(missing).getTitle());
+            }
+        }
+
         BigDecimal total = BigDecimal.ZERO;
 
         for (CartItem cartItem : cartItems) {
-            Book book = bookRepository.findById(cartItem.getBookId())
-                    .orElseThrow(() -> new RuntimeException("Книга не найдена: " + cartItem.getBookId()));
-
-            // Проверка наличия на складе
-            if (book.getStock() < cartItem.getQuantity()) {
-                throw new RuntimeException("Недостаточно товара на складе: " + book.getTitle());
-            }
+            BookAvailability book = books.get(cartItem.getBookId());
 
+            // Ссылка без SELECT: для позиции заказа нужен только внешний ключ
             OrderItem orderItem = OrderItem.builder()
-                    .book(book)
+                    .book(bookRepository.getReferenceById(book.getId()))
                     .quantity(cartItem.getQuantity())
                     .priceAtOrder(book.getPrice())
                     .build();
 
             order.addItem(orderItem);
             total = total.add(orderItem.getSubtotal());
-
-            // Уменьшаем количество на складе
-            book.setStock(book.getStock() - cartItem.getQuantity());
-            bookRepository.save(book);
         }
 
         order.setTotalAmount(total);
         return orderRepository.save(order);
     }
 
-    public List<Order> getUserOrders(User user) {
-        return orderRepository.findByUserOrderByCreatedAtDesc(user);
+    /**
+     * Порция истории заказов после курсора (null — с самых новых), один запрос без COUNT
+     */
+    public OrderHistoryPage getUserOrders(User user, String cursor, int limit) {
+        // Берем на одну строку больше, чтобы узнать, есть ли следующая порция
+        PageRequest page = PageRequest.ofSize(limit + 1);
+        OrderSummary after = decodeCursor(cursor);
+        List<OrderSummary> orders = after == null
+                ? orderRepository.findRecentSummaries(user.getId(), page)
+                : orderRepository.findSummariesBefore(user.getId(), after.getCreatedAt(), after.getId(), page);
+
+        if (orders.size() <= limit) {
+            return new OrderHistoryPage(orders, null);
+        }
+        List<OrderSummary> content = orders.subList(0, limit);
+        return new OrderHistoryPage(new ArrayList<>(content), encodeCursor(content.get(limit - 1)));
+    }
+
+    /**
+     * Курсор — base64url от "created_at|id" последнего показанного заказа
+     */
+    private static String encodeCursor(OrderSummary last) {
+        String raw = last.getCreatedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Некорректный курсор считается отсутствующим — история показывается с начала
+     */
+    private static OrderSummary decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return OrderSummary.builder()
+                    .createdAt(LocalDateTime.parse(raw.substring(0, separator)))
+                    .id(Long.parseLong(raw.substring(separator + 1)))
+                    .build();
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 
+    /**
+     * Заказ с позициями и книгами (один запрос)
+     */
     public Order getOrderById(Long id) {
-        return orderRepository.findById(id).orElse(null);
+        return orderRepository.findWithItemsById(id).orElse(null);
     }
 
-    @Transactional
     public void cancelOrder(Long orderId, User user) {
-        Order order = orderRepository.findById(orderId)
+        inventoryService.inTransaction(status -> {
+            doCancelOrder(orderId, user);
+            return null;
+        });
+    }
+
+    private void doCancelOrder(Long orderId, User user) {
+        Order order = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new RuntimeException("Заказ не найден"));
 
         if (!order.getUser().getId().equals(user.getId())) {
             throw new RuntimeException("Недостаточно прав");
         }
 
-        if (order.getStatus() != Order.OrderStatus.PENDING) {
+        // Смена статуса условным UPDATE: при двух одновременных отменах товар вернется один раз
+        int cancelled = jdbcTemplate.update(
+                "UPDATE orders SET status = 'CANCELLED' WHERE id = ? AND status = 'PENDING'", orderId);
+        if (order.getStatus() != Order.OrderStatus.PENDING || cancelled == 0) {
             throw new RuntimeException("Можно отменить только заказы в статусе 'Ожидает обработки'");
         }
 
         // Возвращаем товары на склад
+        SortedMap<Long, Integer> quantities = new TreeMap<>();
         for (OrderItem item : order.getItems()) {
-            Book book = item.getBook();
-            book.setStock(book.getStock() + item.getQuantity());
-            bookRepository.save(book);
+            quantities.merge(item.getBook().getId(), item.getQuantity(), Integer::sum);
         }
+        inventoryService.release(quantities);
 
         order.setStatus(Order.OrderStatus.CANCELLED);
         orderRepository.save(order);
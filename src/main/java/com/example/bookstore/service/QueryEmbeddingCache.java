@@ -0,0 +1,66 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.util.LruTtlCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш эмбеддингов поисковых запросов перед EmbeddingService
+ *
+ * Повторные и одновременные одинаковые запросы не приводят к повторному
+ * вызову модели. Векторы хранятся как float[] и не должны изменяться вызывающим кодом.
+ */
+@Service
+public class QueryEmbeddingCache {
+
+    private final EmbeddingService embeddingService;
+    private final LruTtlCache<String, float[]> cache;
+
+    public QueryEmbeddingCache(EmbeddingService embeddingService,
+                               @Value("${bookstore.embedding.query-cache.max-size:10000}") int maxSize,
+                               @Value("${bookstore.embedding.query-cache.ttl:30m}") Duration ttl) {
+        this.embeddingService = embeddingService;
+        this.cache = new LruTtlCache<>(maxSize, ttl.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Эмбеддинг запроса из кэша или от модели
+     */
+    public float[] get(String query) {
+        String key = normalizeQuery(query);
+        float[] embedding = cache.getOrLoad(key, embeddingService::generateEmbedding);
+
+        // Нулевой вектор означает ошибку генерации — такой результат не кэшируем
+        if (isZero(embedding)) {
+            cache.invalidate(key);
+        }
+        return embedding;
+    }
+
+    public LruTtlCache.Stats getStats() {
+        return cache.stats();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private static boolean isZero(float[] embedding) {
+        if (embedding == null) {
+            return true;
+        }
+        for (float v : embedding) {
+            if (v != 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String normalizeQuery(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ");
+    }
+}
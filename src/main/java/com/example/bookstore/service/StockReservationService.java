@@ -0,0 +1,283 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.util.StockLedger;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Резервирование товара в памяти для пиковых распродаж
+ * (включается bookstore.inventory.reservations.enabled=true)
+ *
+ * Каждый экземпляр приложения забирает из book.stock долю остатка (allotment единиц за раз)
+ * в таблицу stock_allotment и продает только из нее: резерв — CAS в StockLedger, без блокировки
+ * строки book, а несколько экземпляров не могут продать одни и те же единицы.
+ * Продажа записывается в stock_sale в транзакции заказа, поэтому после коммита заказа
+ * она не теряется при падении экземпляра. Сброс раз в flush-interval вычитает записанные
+ * продажи из доли.
+ *
+ * Раз в reconcile-interval свободная часть доли возвращается в book.stock (его видят администратор
+ * и другие экземпляры), а heartbeat_at долей продлевается. Доли экземпляра, не продлевавшего
+ * их дольше lease, другие экземпляры возвращают в book.stock за вычетом записанных продаж.
+ */
+@Service
+@ConditionalOnProperty(name = "bookstore.inventory.reservations.enabled", havingValue = "true")
+public class StockReservationService {
+
+    // Переносит до ? единиц (сколько есть) из book.stock в долю экземпляра одним оператором
+    private static final String ALLOT_SQL = """
+            WITH taken AS (
+                UPDATE book b SET stock = b.stock - t.amount
+                FROM (SELECT id, LEAST(GREATEST(stock, 0), ?) AS amount FROM book WHERE id = ? FOR UPDATE) t
+                WHERE b.id = t.id AND t.amount > 0
+                RETURNING b.id, t.amount
+            ), allotted AS (
+                INSERT INTO stock_allotment (owner, book_id, units, heartbeat_at)
+                SELECT ?, id, amount, now() FROM taken
+                ON CONFLICT (owner, book_id) DO UPDATE
+                SET units = stock_allotment.units + EXCLUDED.units, heartbeat_at = now()
+            )
+            SELECT amount FROM taken
+            """;
+
+    // Возвращает ? единиц доли обратно в book.stock
+    private static final String GIVE_BACK_SQL = """
+            WITH returned AS (
+                UPDATE stock_allotment SET units = units - ?
+                WHERE owner = ? AND book_id = ?
+                RETURNING book_id
+            )
+            UPDATE book SET stock = stock + ? WHERE id IN (SELECT book_id FROM returned)
+            """;
+
+    private static final String SALE_SQL =
+            "INSERT INTO stock_sale (owner, book_id, quantity) VALUES (?, ?, ?)";
+
+    // Вычитает записанные (закоммиченные) продажи из доли
+    private static final String FLUSH_SQL = """
+            WITH sold AS (
+                DELETE FROM stock_sale WHERE owner = ? RETURNING book_id, quantity
+            )
+            UPDATE stock_allotment a SET units = a.units - s.quantity
+            FROM (SELECT book_id, SUM(quantity) AS quantity FROM sold GROUP BY book_id) s
+            WHERE a.owner = ? AND a.book_id = s.book_id
+            """;
+
+    private static final String HEARTBEAT_SQL =
+            "UPDATE stock_allotment SET heartbeat_at = now() WHERE owner = ? RETURNING book_id";
+
+    // Возвращает в book.stock непроданный остаток долей упавших экземпляров
+    private static final String RECLAIM_SQL = """
+            WITH expired AS (
+                DELETE FROM stock_allotment
+                WHERE owner <> ? AND heartbeat_at < now() - make_interval(secs => ?)
+                RETURNING owner, book_id, units
+            ), sold AS (
+                DELETE FROM stock_sale s USING expired e
+                WHERE s.owner = e.owner AND s.book_id = e.book_id
+                RETURNING s.book_id, s.quantity
+            ), returned AS (
+                SELECT book_id, SUM(units) AS units FROM (
+                    SELECT book_id, units FROM expired
+                    UNION ALL
+                    SELECT book_id, -quantity FROM sold
+                ) r
+                GROUP BY book_id
+            )
+            UPDATE book b SET stock = b.stock + r.units
+            FROM returned r
+            WHERE b.id = r.book_id AND r.units <> 0
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StockLedger ledger;
+    private final ScheduledExecutorService scheduler;
+    private final String owner = UUID.randomUUID().toString();
+    private final int allotment;
+    private final Duration lease;
+
+    public StockReservationService(JdbcTemplate jdbcTemplate,
+                                   @Value("${bookstore.inventory.reservations.ttl:10m}") Duration ttl,
+                                   @Value("${bookstore.inventory.reservations.allotment:50}") int allotment,
+                                   @Value("${bookstore.inventory.reservations.flush-interval:1s}") Duration flushInterval,
+                                   @Value("${bookstore.inventory.reservations.reconcile-interval:30s}") Duration reconcileInterval,
+                                   @Value("${bookstore.inventory.reservations.lease:2m}") Duration lease) {
+        if (lease.compareTo(reconcileInterval.multipliedBy(2)) < 0) {
+            throw new IllegalArgumentException("bookstore.inventory.reservations.lease должен быть "
+                    + "не меньше двух reconcile-interval");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledger = new StockLedger(ttl.toNanos(), TimeUnit.NANOSECONDS);
+        this.allotment = Math.max(1, allotment);
+        this.lease = lease;
+
+        // Один поток; flush() и reconcile() к тому же synchronized
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stock-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(guarded("сброс", this::flush),
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(guarded("сверка", this::reconcile),
+                reconcileInterval.toMillis(), reconcileInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        System.out.println("✅ Резервирование остатков в памяти (доля экземпляра — по " + this.allotment + " шт.)");
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        // Свободный остаток сразу возвращается в БД, не дожидаясь истечения lease
+        flush();
+        giveBackIdle();
+    }
+
+    /**
+     * Резервирует все позиции или ни одной; если доли экземпляра не хватает,
+     * она пополняется из book.stock
+     *
+     * @return id первой книги, которой не хватило, или null, если резерв holdId создан
+     */
+    public Long reserve(String holdId, SortedMap<Long, Integer> quantities) {
+        while (true) {
+            Long missing = ledger.tryReserve(holdId, quantities);
+            if (missing == null) {
+                return null;
+            }
+            // Пополненное могли разобрать параллельные резервы — тогда пополняем снова,
+            // пока в book.stock что-то есть
+            if (allot(missing, quantities.get(missing)) == 0) {
+                return missing;
+            }
+        }
+    }
+
+    /**
+     * Заказ сохраняется: резерв становится продажей из доли экземпляра.
+     * После true нужно вызвать recordSale() в транзакции заказа
+     *
+     * @return false, если резерв уже истек или доля перестала принадлежать экземпляру
+     */
+    public boolean confirm(String holdId) {
+        return ledger.confirm(holdId);
+    }
+
+    /**
+     * Записывает подтвержденную продажу; вызывается в транзакции заказа (в каждой ее попытке)
+     */
+    public void recordSale(SortedMap<Long, Integer> quantities) {
+        List<Object[]> args = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            args.add(new Object[]{owner, entry.getKey(), entry.getValue()});
+        }
+        jdbcTemplate.batchUpdate(SALE_SQL, args);
+    }
+
+    public void release(String holdId) {
+        ledger.release(holdId);
+    }
+
+    /**
+     * Подтвержденная продажа не стала заказом (транзакция заказа откатилась вместе с записью о ней)
+     */
+    public void cancelSale(SortedMap<Long, Integer> quantities) {
+        ledger.cancelSale(quantities);
+    }
+
+    public long available(Long bookId) {
+        return ledger.available(bookId);
+    }
+
+    /**
+     * Вычитает записанные продажи из доли экземпляра и снимает просроченные резервы
+     */
+    public synchronized void flush() {
+        ledger.expire();
+        jdbcTemplate.update(FLUSH_SQL, owner, owner);
+    }
+
+    /**
+     * Возвращает свободную часть доли в БД, продлевает свои доли и забирает доли упавших экземпляров
+     */
+    public synchronized void reconcile() {
+        flush();
+        giveBackIdle();
+
+        // Снимок до heartbeat: доли книг, пополненных позже, в его результат не попадут
+        Set<Long> tracked = ledger.trackedIds();
+        Set<Long> owned = new HashSet<>(jdbcTemplate.queryForList(HEARTBEAT_SQL, Long.class, owner));
+        for (Long id : tracked) {
+            if (!owned.contains(id)) {
+                // Книгу удалили или долю забрал другой экземпляр (heartbeat не продлевался дольше lease)
+                System.err.println("Доля остатка книги " + id + " больше не принадлежит экземпляру");
+                ledger.untrack(id);
+            }
+        }
+
+        int reclaimed = jdbcTemplate.update(RECLAIM_SQL, owner, lease.toSeconds());
+        if (reclaimed > 0) {
+            System.out.println("Возвращен остаток " + reclaimed + " книг от остановленных экземпляров");
+        }
+    }
+
+    /**
+     * @return сколько единиц перенесено из book.stock в долю экземпляра
+     */
+    private long allot(Long bookId, int quantity) {
+        List<Long> taken = jdbcTemplate.queryForList(ALLOT_SQL, Long.class,
+                Math.max(allotment, quantity), bookId, owner);
+        long units = taken.isEmpty() ? 0 : taken.get(0);
+        if (units > 0) {
+            ledger.add(bookId, units);
+        }
+        return units;
+    }
+
+    private void giveBackIdle() {
+        for (Long id : ledger.trackedIds()) {
+            long idle = ledger.takeAll(id);
+            if (idle == 0) {
+                continue;
+            }
+            try {
+                if (jdbcTemplate.update(GIVE_BACK_SQL, idle, owner, id, idle) == 0) {
+                    // Доли уже нет в БД — остаток вернул экземпляр, забравший ее
+                    ledger.untrack(id);
+                }
+            } catch (RuntimeException e) {
+                ledger.add(id, idle);
+                throw e;
+            }
+        }
+    }
+
+    private static Runnable guarded(String name, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                System.err.println("Ошибка резервирования остатков (" + name + "): " + e.getMessage());
+            }
+        };
+    }
+
+    public int getActiveHolds() {
+        return ledger.activeHolds();
+    }
+}
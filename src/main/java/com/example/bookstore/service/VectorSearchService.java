@@ -2,36 +2,107 @@ package com.example.bookstore.service;
 
 import com.example.bookstore.model.Book;
 import com.example.bookstore.repository.BookRepository;
-import com.example.bookstore.util.VectorUtils;
+import com.example.bookstore.repository.BookRows;
+import com.example.bookstore.util.EmbeddingHash;
+import com.example.bookstore.util.PgVector;
+import com.example.bookstore.vector.VectorIndex;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * АЛЬТЕРНАТИВНАЯ ВЕРСИЯ
  * Использует JdbcTemplate для работы с векторами
  * Не требует Hypersistence Utils
+ *
+ * Если настроен VectorIndex (bookstore.vector.backend=in-memory, flat или quantized),
+ * kNN-поиск выполняется в памяти, а из БД подгружаются только найденные книги.
+ *
+ * Запросы к pgvector выполняются в read-only транзакции, где только для нее задается
+ * hnsw.ef_search (bookstore.vector.pg.ef-search, не меньше limit). Поиск с фильтром
+ * использует итеративное сканирование HNSW (pgvector 0.8+, bookstore.vector.pg.iterative-scan):
+ * индекс дочитывается, пока фильтр не пропустит limit книг. Если оно выключено (off)
+ * или не поддерживается, кандидаты дозапрашиваются с удвоением, пока их не хватит.
  */
 @Service
 public class VectorSearchService {
 
+    // Максимум hnsw.ef_search в pgvector
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private static final String BOOK_COLUMNS =
+            "b.id, b.title, b.author, b.genre, b.description, b.isbn, b.price, b.stock, b.image_path";
+
     private final BookRepository bookRepository;
     private final EmbeddingService embeddingService;
+    private final QueryEmbeddingCache queryEmbeddingCache;
     private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingPipeline embeddingPipeline;
+    private final VectorIndex vectorIndex;
+    private final BookEmbeddingStore embeddingStore;
+    private final int filterOverFetch;
+    private final String vectorType;
+    private final int dimension;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int efSearch;
+    private final String iterativeScan;
+    private final int maxScanTuples;
+    private volatile boolean iterativeScanEnabled;
+    // null — версия pgvector еще не проверялась
+    private volatile Boolean iterativeScanSupported;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     public VectorSearchService(BookRepository bookRepository,
                                EmbeddingService embeddingService,
-                               JdbcTemplate jdbcTemplate) {
+                               QueryEmbeddingCache queryEmbeddingCache,
+                               JdbcTemplate jdbcTemplate,
+                               EmbeddingPipeline embeddingPipeline,
+                               ObjectProvider<VectorIndex> vectorIndexProvider,
+                               BookEmbeddingStore embeddingStore,
+                               EmbeddingSchema embeddingSchema,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${bookstore.vector.filter-over-fetch:5}") int filterOverFetch,
+                               @Value("${bookstore.vector.pg.ef-search:40}") int efSearch,
+                               @Value("${bookstore.vector.pg.iterative-scan:relaxed_order}") String iterativeScan,
+                               @Value("${bookstore.vector.pg.max-scan-tuples:20000}") int maxScanTuples) {
         this.bookRepository = bookRepository;
         this.embeddingService = embeddingService;
+        this.queryEmbeddingCache = queryEmbeddingCache;
         this.jdbcTemplate = jdbcTemplate;
+        this.embeddingPipeline = embeddingPipeline;
+        this.vectorIndex = vectorIndexProvider.getIfAvailable();
+        this.embeddingStore = embeddingStore;
+        this.filterOverFetch = Math.max(1, filterOverFetch);
+        this.vectorType = embeddingSchema.getType();
+        this.dimension = embeddingSchema.getDimension();
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.efSearch = Math.max(1, Math.min(MAX_EF_SEARCH, efSearch));
+        this.iterativeScan = iterativeScan;
+        this.maxScanTuples = maxScanTuples;
+        this.iterativeScanEnabled = !"off".equals(iterativeScan);
     }
 
     /**
@@ -39,34 +110,24 @@ public class VectorSearchService {
      */
     public List<Book> semanticSearch(String query, int limit) {
         try {
-            // Генерируем эмбеддинг для запроса
-            float[] queryEmbedding = embeddingService.generateEmbedding(query);
-            String vectorString = VectorUtils.formatVectorForPostgres(queryEmbedding);
+            // Эмбеддинг запроса (из кэша или от модели)
+            float[] queryEmbedding = queryEmbeddingCache.get(query);
+
+            if (vectorIndex != null) {
+                return findBooksByIds(vectorIndex.search(queryEmbedding, limit), book -> true, limit);
+            }
 
             // Выполняем нативный SQL запрос
             String sql = """
-                SELECT id, title, author, genre, description, isbn, price, stock, image_path
-                FROM book 
-                WHERE embedding IS NOT NULL
-                ORDER BY embedding <=> CAST(? AS vector)
+                SELECT b.id, b.title, b.author, b.genre, b.description, b.isbn, b.price, b.stock, b.image_path
+                FROM book_embedding e
+                JOIN book b ON b.id = e.book_id
+                ORDER BY e.embedding <=> CAST(? AS %s)
                 LIMIT ?
-                """;
-
-            return jdbcTemplate.query(
-                    sql,
-                    new Object[]{vectorString, limit},
-                    (rs, rowNum) -> Book.builder()
-                            .id(rs.getLong("id"))
-                            .title(rs.getString("title"))
-                            .author(rs.getString("author"))
-                            .genre(rs.getString("genre"))
-                            .description(rs.getString("description"))
-                            .isbn(rs.getString("isbn"))
-                            .price(rs.getBigDecimal("price"))
-                            .stock(rs.getInt("stock"))
-                            .imagePath(rs.getString("image_path"))
-                            .build()
-            );
+                """.formatted(vectorType);
+
+            return withHnswSettings(efSearchFor(limit), false, () ->
+                    jdbcTemplate.query(sql, new Object[]{new PgVector(queryEmbedding), limit}, BookRows.MAPPER));
 
         } catch (Exception e) {
             System.err.println("Ошибка семантического поиска: " + e.getMessage());
@@ -80,41 +141,32 @@ public class VectorSearchService {
      */
     public List<Book> findSimilarBooks(Book book, int limit) {
         try {
-            // Сначала загружаем эмбеддинг книги из БД
-            float[] embedding = loadEmbedding(book.getId());
+            // Сначала загружаем эмбеддинг книги (из индекса в памяти или из БД)
+            float[] embedding = embeddingStore.find(book.getId());
 
             if (embedding == null) {
                 // Если нет эмбеддинга, генерируем
                 embedding = embeddingService.generateEmbedding(book.getTextForEmbedding());
-                saveEmbedding(book.getId(), embedding);
+                saveEmbedding(book, embedding);
             }
 
-            String vectorString = VectorUtils.formatVectorForPostgres(embedding);
+            if (vectorIndex != null) {
+                List<Long> ids = vectorIndex.search(embedding, limit + 1);
+                return findBooksByIds(ids, candidate -> !candidate.getId().equals(book.getId()), limit);
+            }
 
             String sql = """
-                SELECT id, title, author, genre, description, isbn, price, stock, image_path
-                FROM book 
-                WHERE embedding IS NOT NULL 
-                AND id != ?
-                ORDER BY embedding <=> CAST(? AS vector)
+                SELECT b.id, b.title, b.author, b.genre, b.description, b.isbn, b.price, b.stock, b.image_path
+                FROM book_embedding e
+                JOIN book b ON b.id = e.book_id
+                WHERE e.book_id != ?
+                ORDER BY e.embedding <=> CAST(? AS %s)
                 LIMIT ?
-                """;
-
-            return jdbcTemplate.query(
-                    sql,
-                    new Object[]{book.getId(), vectorString, limit},
-                    (rs, rowNum) -> Book.builder()
-                            .id(rs.getLong("id"))
-                            .title(rs.getString("title"))
-                            .author(rs.getString("author"))
-                            .genre(rs.getString("genre"))
-                            .description(rs.getString("description"))
-                            .isbn(rs.getString("isbn"))
-                            .price(rs.getBigDecimal("price"))
-                            .stock(rs.getInt("stock"))
-                            .imagePath(rs.getString("image_path"))
-                            .build()
-            );
+                """.formatted(vectorType);
+
+            float[] target = embedding;
+            return withHnswSettings(efSearchFor(limit + 1), false, () ->
+                    jdbcTemplate.query(sql, new Object[]{book.getId(), new PgVector(target), limit}, BookRows.MAPPER));
 
         } catch (Exception e) {
             System.err.println("Ошибка поиска похожих книг: " + e.getMessage());
@@ -128,33 +180,13 @@ public class VectorSearchService {
      */
     public List<Book> semanticSearchByGenre(String query, String genre, int limit) {
         try {
-            float[] queryEmbedding = embeddingService.generateEmbedding(query);
-            String vectorString = VectorUtils.formatVectorForPostgres(queryEmbedding);
+            float[] queryEmbedding = queryEmbeddingCache.get(query);
 
-            String sql = """
-                SELECT id, title, author, genre, description, isbn, price, stock, image_path
-                FROM book 
-                WHERE embedding IS NOT NULL
-                AND LOWER(genre) = LOWER(?)
-                ORDER BY embedding <=> CAST(? AS vector)
-                LIMIT ?
-                """;
-
-            return jdbcTemplate.query(
-                    sql,
-                    new Object[]{genre, vectorString, limit},
-                    (rs, rowNum) -> Book.builder()
-                            .id(rs.getLong("id"))
-                            .title(rs.getString("title"))
-                            .author(rs.getString("author"))
-                            .genre(rs.getString("genre"))
-                            .description(rs.getString("description"))
-                            .isbn(rs.getString("isbn"))
-                            .price(rs.getBigDecimal("price"))
-                            .stock(rs.getInt("stock"))
-                            .imagePath(rs.getString("image_path"))
-                            .build()
-            );
+            if (vectorIndex != null) {
+                return indexFilteredSearch(queryEmbedding, book -> genre.equalsIgnoreCase(book.getGenre()), limit);
+            }
+
+            return filteredSearch(queryEmbedding, "LOWER(b.genre) = LOWER(?)", new Object[]{genre}, limit);
 
         } catch (Exception e) {
             System.err.println("Ошибка поиска по жанру: " + e.getMessage());
@@ -167,33 +199,13 @@ public class VectorSearchService {
      */
     public List<Book> semanticSearchInStock(String query, int limit) {
         try {
-            float[] queryEmbedding = embeddingService.generateEmbedding(query);
-            String vectorString = VectorUtils.formatVectorForPostgres(queryEmbedding);
+            float[] queryEmbedding = queryEmbeddingCache.get(query);
 
-            String sql = """
-                SELECT id, title, author, genre, description, isbn, price, stock, image_path
-                FROM book 
-                WHERE embedding IS NOT NULL
-                AND stock > 0
-                ORDER BY embedding <=> CAST(? AS vector)
-                LIMIT ?
-                """;
-
-            return jdbcTemplate.query(
-                    sql,
-                    new Object[]{vectorString, limit},
-                    (rs, rowNum) -> Book.builder()
-                            .id(rs.getLong("id"))
-                            .title(rs.getString("title"))
-                            .author(rs.getString("author"))
-                            .genre(rs.getString("genre"))
-                            .description(rs.getString("description"))
-                            .isbn(rs.getString("isbn"))
-                            .price(rs.getBigDecimal("price"))
-                            .stock(rs.getInt("stock"))
-                            .imagePath(rs.getString("image_path"))
-                            .build()
-            );
+            if (vectorIndex != null) {
+                return indexFilteredSearch(queryEmbedding, book -> book.getStock() > 0, limit);
+            }
+
+            return filteredSearch(queryEmbedding, "b.stock > 0", new Object[0], limit);
 
         } catch (Exception e) {
             System.err.println("Ошибка поиска в наличии: " + e.getMessage());
@@ -202,155 +214,287 @@ public class VectorSearchService {
     }
 
     /**
-     * Гибридный поиск
+     * id ближайших к запросу книг по порядку близости (для объединения с другими поисками)
      */
-    public List<Book> hybridSearch(String query, int limit) {
-        try {
-            float[] queryEmbedding = embeddingService.generateEmbedding(query);
-            String vectorString = VectorUtils.formatVectorForPostgres(queryEmbedding);
-            String keyword = extractMainKeyword(query);
+    public List<Long> semanticSearchIds(String query, int limit) {
+        float[] queryEmbedding = queryEmbeddingCache.get(query);
 
-            String sql = """
-                SELECT id, title, author, genre, description, isbn, price, stock, image_path
-                FROM book 
-                WHERE embedding IS NOT NULL
-                AND (
-                    LOWER(title) LIKE LOWER(?)
-                    OR LOWER(author) LIKE LOWER(?)
-                    OR LOWER(description) LIKE LOWER(?)
-                )
-                ORDER BY embedding <=> CAST(? AS vector)
-                LIMIT ?
-                """;
-
-            String likePattern = "%" + keyword + "%";
-
-            return jdbcTemplate.query(
-                    sql,
-                    new Object[]{likePattern, likePattern, likePattern, vectorString, limit},
-                    (rs, rowNum) -> Book.builder()
-                            .id(rs.getLong("id"))
-                            .title(rs.getString("title"))
-                            .author(rs.getString("author"))
-                            .genre(rs.getString("genre"))
-                            .description(rs.getString("description"))
-                            .isbn(rs.getString("isbn"))
-                            .price(rs.getBigDecimal("price"))
-                            .stock(rs.getInt("stock"))
-                            .imagePath(rs.getString("image_path"))
-                            .build()
-            );
+        if (vectorIndex != null) {
+            return vectorIndex.search(queryEmbedding, limit);
+        }
 
-        } catch (Exception e) {
-            System.err.println("Ошибка гибридного поиска: " + e.getMessage());
+        String sql = """
+            SELECT book_id
+            FROM book_embedding
+            ORDER BY embedding <=> CAST(? AS %s)
+            LIMIT ?
+            """.formatted(vectorType);
+
+        return withHnswSettings(efSearchFor(limit), false, () ->
+                jdbcTemplate.queryForList(sql, Long.class, new PgVector(queryEmbedding), limit));
+    }
+
+    /**
+     * id книг, ближайших к книге bookId (без нее самой), по порядку близости;
+     * пустой список, если у книги нет эмбеддинга
+     */
+    public List<Long> findSimilarIds(Long bookId, int limit) {
+        float[] embedding = embeddingStore.find(bookId);
+        if (embedding == null || embedding.length != dimension) {
             return List.of();
         }
+
+        if (vectorIndex != null) {
+            List<Long> ids = new ArrayList<>(vectorIndex.search(embedding, limit + 1));
+            ids.remove(bookId);
+            return ids.size() > limit ? ids.subList(0, limit) : ids;
+        }
+
+        String sql = """
+            SELECT book_id
+            FROM book_embedding
+            WHERE book_id != ?
+            ORDER BY embedding <=> CAST(? AS %s)
+            LIMIT ?
+            """.formatted(vectorType);
+
+        return withHnswSettings(efSearchFor(limit + 1), false, () ->
+                jdbcTemplate.queryForList(sql, Long.class, bookId, new PgVector(embedding), limit));
     }
 
+    // ====================================================================
+    // ПОИСК В PGVECTOR
+    // ====================================================================
+
     /**
-     * Индексирование всех книг без эмбеддингов
+     * kNN-поиск с условием на книгу (filter ссылается на таблицу book как b)
      */
-    @Transactional
-    public void indexAllBooks() {
-        List<Book> booksWithoutEmbeddings = bookRepository.findBooksWithoutEmbeddings();
+    private List<Book> filteredSearch(float[] queryEmbedding, String filter, Object[] filterArgs, int limit) {
+        if (iterativeScanEnabled && isIterativeScanSupported()) {
+            try {
+                return iterativeFilteredSearch(queryEmbedding, filter, filterArgs, limit);
+            } catch (DataAccessException e) {
+                String message = String.valueOf(e.getMostSpecificCause().getMessage());
+                if (!message.contains("iterative_scan") && !message.contains("max_scan_tuples")) {
+                    throw e;
+                }
+                iterativeScanEnabled = false;
+                System.err.println("⚠️ pgvector не поддерживает hnsw.iterative_scan (нужна версия 0.8+): "
+                        + "поиск с фильтром переключен на дозапрос кандидатов");
+            }
+        }
+        return overFetchFilteredSearch(queryEmbedding, filter, filterArgs, limit);
+    }
 
-        if (booksWithoutEmbeddings.isEmpty()) {
-            System.out.println("Все книги уже проиндексированы!");
-            return;
+    /**
+     * hnsw.iterative_scan появился в pgvector 0.8. На старых версиях set_config не всегда
+     * падает (PostgreSQL до 15 принимает неизвестный параметр с префиксом как заглушку),
+     * и запрос молча возвращает меньше limit строк — поэтому версия проверяется явно
+     */
+    private boolean isIterativeScanSupported() {
+        Boolean supported = iterativeScanSupported;
+        if (supported == null) {
+            List<String> versions = jdbcTemplate.queryForList(
+                    "SELECT extversion FROM pg_extension WHERE extname = 'vector'", String.class);
+            String version = versions.isEmpty() ? null : versions.get(0);
+            supported = version != null && isAtLeast(version, 0, 8);
+            if (!supported) {
+                System.err.println("⚠️ pgvector " + version + " не поддерживает hnsw.iterative_scan (нужна версия 0.8+): "
+                        + "поиск с фильтром идет через дозапрос кандидатов");
+            }
+            iterativeScanSupported = supported;
         }
+        return supported;
+    }
 
-        System.out.println("Найдено " + booksWithoutEmbeddings.size() + " книг без эмбеддингов");
+    /**
+     * Сравнивает "major.minor[.patch]" с заданной версией; нечисловые хвосты ("0.8.0-dev") отбрасываются
+     */
+    private static boolean isAtLeast(String version, int major, int minor) {
+        String[] parts = version.split("\\.");
+        int actualMajor = leadingNumber(parts[0]);
+        int actualMinor = parts.length > 1 ? leadingNumber(parts[1]) : 0;
+        return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+    }
 
-        int processed = 0;
-        for (Book book : booksWithoutEmbeddings) {
-            try {
-                float[] embedding = embeddingService.generateEmbedding(book.getTextForEmbedding());
-                saveEmbedding(book.getId(), embedding);
+    private static int leadingNumber(String part) {
+        int end = 0;
+        while (end < part.length() && Character.isDigit(part.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? 0 : Integer.parseInt(part.substring(0, end));
+    }
 
-                processed++;
-                if (processed % 10 == 0) {
-                    System.out.println("Обработано " + processed + " из " + booksWithoutEmbeddings.size());
-                }
+    /**
+     * Итеративное сканирование: фильтр применяется внутри обхода индекса.
+     * В режиме relaxed_order порядок может слегка нарушаться, поэтому результат пересортировывается
+     */
+    private List<Book> iterativeFilteredSearch(float[] queryEmbedding, String filter, Object[] filterArgs, int limit) {
+        String sql = """
+            WITH nearest AS MATERIALIZED (
+                SELECT %s, e.embedding <=> CAST(? AS %s) AS distance
+                FROM book_embedding e
+                JOIN book b ON b.id = e.book_id
+                WHERE %s
+                ORDER BY distance
+                LIMIT ?
+            )
+            SELECT * FROM nearest ORDER BY distance
+            """.formatted(BOOK_COLUMNS, vectorType, filter);
 
-                Thread.sleep(100);
+        Object[] args = queryArgs(queryEmbedding, filterArgs, limit);
+        return withHnswSettings(efSearchFor(limit), true, () -> jdbcTemplate.query(sql, args, BookRows.MAPPER));
+    }
 
-            } catch (Exception e) {
-                System.err.println("Ошибка обработки книги " + book.getId() + ": " + e.getMessage());
+    /**
+     * Без итеративного сканирования индекс отдает не больше ef_search кандидатов:
+     * берем limit * filter-over-fetch ближайших, фильтруем и при нехватке удваиваем число кандидатов
+     */
+    private List<Book> overFetchFilteredSearch(float[] queryEmbedding, String filter, Object[] filterArgs, int limit) {
+        String sql = """
+            WITH candidates AS MATERIALIZED (
+                SELECT book_id, embedding <=> CAST(? AS %s) AS distance
+                FROM book_embedding
+                ORDER BY distance
+                LIMIT ?
+            )
+            SELECT %s
+            FROM candidates c
+            JOIN book b ON b.id = c.book_id
+            WHERE %s
+            ORDER BY c.distance
+            LIMIT ?
+            """.formatted(vectorType, BOOK_COLUMNS, filter);
+
+        int candidates = Math.min(MAX_EF_SEARCH, Math.max(limit, limit * filterOverFetch));
+        while (true) {
+            Object[] args = new Object[filterArgs.length + 3];
+            args[0] = new PgVector(queryEmbedding);
+            args[1] = candidates;
+            System.arraycopy(filterArgs, 0, args, 2, filterArgs.length);
+            args[args.length - 1] = limit;
+
+            List<Book> books = withHnswSettings(efSearchFor(candidates), false,
+                    () -> jdbcTemplate.query(sql, args, BookRows.MAPPER));
+            if (books.size() >= limit || candidates >= MAX_EF_SEARCH) {
+                return books;
             }
+            candidates = Math.min(MAX_EF_SEARCH, candidates * 2);
         }
+    }
 
-        System.out.println("Индексация завершена: " + processed + "/" + booksWithoutEmbeddings.size());
+    /**
+     * Фильтр поверх индекса в памяти: берем limit * filter-over-fetch ближайших и при нехватке
+     * удваиваем число кандидатов, пока не наберется limit книг или не кончится индекс.
+     * Книги, проверенные в предыдущем круге, повторно не загружаются
+     */
+    private List<Book> indexFilteredSearch(float[] queryEmbedding, Predicate<Book> filter, int limit) {
+        List<Book> result = new ArrayList<>(limit);
+        Set<Long> checked = new HashSet<>();
+        int candidates = Math.max(limit, limit * filterOverFetch);
+        while (true) {
+            List<Long> ids = vectorIndex.search(queryEmbedding, candidates);
+            List<Long> unchecked = new ArrayList<>();
+            for (Long id : ids) {
+                if (checked.add(id)) {
+                    unchecked.add(id);
+                }
+            }
+            result.addAll(findBooksByIds(unchecked, filter, limit - result.size()));
+            if (result.size() >= limit || ids.size() < candidates || candidates >= vectorIndex.size()) {
+                return result;
+            }
+            candidates = (int) Math.min(Integer.MAX_VALUE, 2L * candidates);
+        }
     }
 
     /**
-     * Переиндексация всех книг
+     * Выполняет запрос в read-only транзакции с параметрами HNSW только для нее
+     * (set_config(..., true) — то же, что SET LOCAL, но значение передается параметром)
      */
-    @Transactional
-    public void reindexAllBooks() {
-        List<Book> allBooks = bookRepository.findAll();
-        System.out.println("Переиндексация " + allBooks.size() + " книг...");
+    private <T> T withHnswSettings(int ef, boolean iterative, Supplier<T> query) {
+        return readOnlyTransaction.execute(status -> {
+            setLocal("hnsw.ef_search", ef);
+            if (iterative) {
+                setLocal("hnsw.iterative_scan", iterativeScan);
+                setLocal("hnsw.max_scan_tuples", maxScanTuples);
+            }
+            return query.get();
+        });
+    }
 
-        int processed = 0;
-        for (Book book : allBooks) {
-            try {
-                float[] embedding = embeddingService.generateEmbedding(book.getTextForEmbedding());
-                saveEmbedding(book.getId(), embedding);
+    private void setLocal(String name, Object value) {
+        jdbcTemplate.queryForObject("SELECT set_config(?, ?, true)", String.class, name, String.valueOf(value));
+    }
 
-                processed++;
-                if (processed % 10 == 0) {
-                    System.out.println("Обработано " + processed + " из " + allBooks.size());
-                }
+    /**
+     * ef_search не может быть меньше числа запрошенных строк, иначе индекс вернет меньше limit
+     */
+    private int efSearchFor(int rows) {
+        return Math.min(MAX_EF_SEARCH, Math.max(efSearch, rows));
+    }
 
-                Thread.sleep(100);
+    private static Object[] queryArgs(float[] queryEmbedding, Object[] filterArgs, int limit) {
+        Object[] args = new Object[filterArgs.length + 2];
+        args[0] = new PgVector(queryEmbedding);
+        System.arraycopy(filterArgs, 0, args, 1, filterArgs.length);
+        args[args.length - 1] = limit;
+        return args;
+    }
 
-            } catch (Exception e) {
-                System.err.println("Ошибка обработки книги " + book.getId() + ": " + e.getMessage());
-            }
-        }
+    /**
+     * Индексирование всех книг без эмбеддингов
+     */
+    public void indexAllBooks() {
+        embeddingPipeline.run(true);
+    }
 
-        System.out.println("Переиндексация завершена!");
+    /**
+     * Переиндексация всех книг
+     */
+    public void reindexAllBooks() {
+        embeddingPipeline.run(false);
     }
 
     /**
-     * Загрузить эмбеддинг книги из БД
+     * Сохранить эмбеддинг книги вместе с хешем текста и модели
      */
-    private float[] loadEmbedding(Long bookId) {
+    public void saveEmbedding(Book book, float[] embedding) {
         try {
-            String sql = "SELECT embedding FROM book WHERE id = ?";
-
-            return jdbcTemplate.query(
-                    sql,
-                    new Object[]{bookId},
-                    rs -> {
-                        if (rs.next()) {
-                            String vectorStr = rs.getString("embedding");
-                            if (vectorStr != null && !vectorStr.isEmpty()) {
-                                return VectorUtils.parseVectorFromPostgres(vectorStr);
-                            }
-                        }
-                        return null;
-                    }
-            );
+            String modelId = embeddingService.getModelId();
+            embeddingStore.save(book.getId(), embedding, EmbeddingHash.of(book.getTextForEmbedding(), modelId), modelId);
         } catch (Exception e) {
-            System.err.println("Ошибка загрузки эмбеддинга: " + e.getMessage());
-            return null;
+            System.err.println("Ошибка сохранения эмбеддинга для книги " + book.getId() + ": " + e.getMessage());
+            e.printStackTrace();
         }
     }
 
     /**
-     * Сохранить эмбеддинг книги в БД
+     * Загружает все эмбеддинги из БД в индекс в памяти при старте приложения
      */
-    @Transactional
-    public void saveEmbedding(Long bookId, float[] embedding) {
-        try {
-            String vectorString = VectorUtils.formatVectorForPostgres(embedding);
-            String sql = "UPDATE book SET embedding = CAST(? AS vector) WHERE id = ?";
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    @Transactional(readOnly = true)
+    public void loadVectorIndex() {
+        if (vectorIndex == null) {
+            return;
+        }
 
-            jdbcTemplate.update(sql, vectorString, bookId);
+        long start = System.currentTimeMillis();
+        int[] skipped = {0};
+        embeddingStore.forEach((bookId, embedding) -> {
+            // Эмбеддинги старой размерности (схема еще не мигрирована) в индекс не попадают
+            if (embedding.length != dimension) {
+                skipped[0]++;
+                return;
+            }
+            vectorIndex.upsert(bookId, embedding);
+        });
 
-        } catch (Exception e) {
-            System.err.println("Ошибка сохранения эмбеддинга для книги " + bookId + ": " + e.getMessage());
-            e.printStackTrace();
+        System.out.println("Векторный индекс в памяти загружен: " + vectorIndex.size()
+                + " книг за " + (System.currentTimeMillis() - start) + " мс");
+        if (skipped[0] > 0) {
+            System.err.println("Пропущено эмбеддингов другой размерности: " + skipped[0]);
         }
     }
 
@@ -359,7 +503,7 @@ public class VectorSearchService {
      */
     public String getIndexingStats() {
         long totalBooks = bookRepository.count();
-        long indexedBooks = bookRepository.countBooksWithEmbeddings();
+        long indexedBooks = embeddingStore.count();
         double percentage = totalBooks > 0 ? (indexedBooks * 100.0 / totalBooks) : 0;
 
         return String.format(
@@ -369,19 +513,46 @@ public class VectorSearchService {
     }
 
     /**
-     * Извлекает основное ключевое слово из запроса
+     * Книги по списку id в том же порядке (одним запросом)
+     */
+    public List<Book> findBooksByIds(List<Long> ids) {
+        return findBooksByIds(ids, book -> true, ids.size());
+    }
+
+    /**
+     * Загружает книги по списку id одним запросом, сохраняя порядок ранжирования,
+     * и оставляет первые limit книг, прошедших фильтр
      */
-    private String extractMainKeyword(String query) {
-        String[] words = query.toLowerCase()
-                .replaceAll("[^a-zа-яё\\s]", "")
-                .split("\\s+");
-
-        String longest = "";
-        for (String word : words) {
-            if (word.length() > longest.length()) {
-                longest = word;
+    private List<Book> findBooksByIds(List<Long> ids, Predicate<Book> filter, int limit) {
+        List<Book> result = new ArrayList<>(Math.min(ids.size(), limit));
+        if (ids.isEmpty()) {
+            return result;
+        }
+
+        String sql = "SELECT " + BookRows.COLUMNS + " FROM book WHERE id = ANY(?)";
+        List<Book> books = jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+                    return ps;
+                },
+                BookRows.MAPPER
+        );
+
+        Map<Long, Book> byId = new HashMap<>(books.size() * 2);
+        for (Book book : books) {
+            byId.put(book.getId(), book);
+        }
+
+        for (Long id : ids) {
+            Book book = byId.get(id);
+            if (book != null && filter.test(book)) {
+                result.add(book);
+                if (result.size() == limit) {
+                    break;
+                }
             }
         }
-        return longest;
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package com.example.bookstore.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Хеш содержимого, по которому строится эмбеддинг книги
+ */
+public final class EmbeddingHash {
+
+    private EmbeddingHash() {
+    }
+
+    /**
+     * SHA-256 от идентификатора модели и текста (hex, 64 символа).
+     * Смена модели меняет хеш, поэтому старые эмбеддинги будут пересозданы.
+     */
+    public static String of(String text, String modelId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            if (text != null) {
+                digest.update(text.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.bookstore.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Ограниченный по размеру кэш с вытеснением LRU и временем жизни записей
+ *
+ * getOrLoad() объединяет одновременные запросы одного ключа:
+ * значение вычисляется один раз, остальные потоки ждут этот же результат.
+ * Срок жизни считается от записи, а с expireAfterAccess — от последнего обращения.
+ */
+public class LruTtlCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final boolean expireAfterAccess;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LruTtlCache(int maxSize, long ttl, TimeUnit unit) {
+        this(maxSize, ttl, unit, System::nanoTime);
+    }
+
+    public LruTtlCache(int maxSize, long ttl, TimeUnit unit, LongSupplier clock) {
+        this(maxSize, ttl, unit, false, clock);
+    }
+
+    public LruTtlCache(int maxSize, long ttl, TimeUnit unit, boolean expireAfterAccess, LongSupplier clock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.expireAfterAccess = expireAfterAccess;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruTtlCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Значение из кэша или null, если его нет или срок жизни истек
+     */
+    public V get(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            long now = clock.getAsLong();
+            if (now - entry.stampedAt >= ttlNanos) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                return null;
+            }
+            if (expireAfterAccess) {
+                entries.put(key, new Entry<>(entry.value, now));
+            }
+            return entry.value;
+        }
+    }
+
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, new Entry<>(value, clock.getAsLong()));
+        }
+    }
+
+    /**
+     * Возвращает значение из кэша или вычисляет его, объединяя одновременные запросы.
+     * Если loader вернул null, значение не кэшируется.
+     */
+    public V getOrLoad(K key, Function<K, V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return join(existing);
+        }
+
+        try {
+            // Значение могло появиться, пока мы регистрировали загрузку
+            V value = get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+                created.complete(value);
+                return value;
+            }
+
+            misses.incrementAndGet();
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+            created.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Удаляет все записи, ключи которых удовлетворяют условию
+     */
+    public void invalidateIf(Predicate<K> condition) {
+        synchronized (entries) {
+            entries.keySet().removeIf(condition);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), coalesced.get(), evictions.get(), size());
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param stampedAt время записи или, с expireAfterAccess, последнего обращения
+     */
+    private record Entry<V>(V value, long stampedAt) {
+    }
+
+    /**
+     * Счетчики кэша: попадания, промахи, объединенные запросы, вытеснения
+     */
+    public record Stats(long hits, long misses, long coalesced, long evictions, int size) {
+
+        public double hitRate() {
+            long total = hits + misses + coalesced;
+            return total > 0 ? (double) (hits + coalesced) / total : 0.0;
+        }
+    }
+}
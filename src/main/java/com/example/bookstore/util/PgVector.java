@@ -0,0 +1,197 @@
+package com.example.bookstore.util;
+
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * JDBC-представление типа pgvector {@code vector}
+ *
+ * Поддерживает бинарный формат send/recv pgvector:
+ * int16 размерность, int16 (зарезервировано, 0), затем float4[] в big-endian.
+ * Тип и бинарная передача для OID vector регистрируются на каждом соединении
+ * в PgVectorConfig; без регистрации используется текстовая форма,
+ * которая строится лениво только при необходимости.
+ */
+public class PgVector extends PGobject implements PGBinaryObject, Cloneable {
+
+    private static final int HEADER_SIZE = 4;
+
+    private float[] vector;
+
+    public PgVector() {
+        this.type = "vector";
+    }
+
+    public PgVector(float[] vector) {
+        this();
+        this.vector = vector;
+    }
+
+    /**
+     * Преобразует значение из ResultSet (PgVector, PGobject или строку) в float[]
+     */
+    public static float[] toArray(Object value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof PgVector pgVector) {
+            return pgVector.toArray();
+        }
+        if (value instanceof PGobject pgObject) {
+            return parse(pgObject.getValue());
+        }
+        return parse(value.toString());
+    }
+
+    public float[] toArray() {
+        return vector;
+    }
+
+    // ====================================================================
+    // БИНАРНЫЙ ФОРМАТ
+    // ====================================================================
+
+    @Override
+    public int lengthInBytes() {
+        return vector == null ? 0 : HEADER_SIZE + vector.length * Float.BYTES;
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        if (vector == null) {
+            return;
+        }
+        int dim = vector.length;
+        bytes[offset] = (byte) (dim >>> 8);
+        bytes[offset + 1] = (byte) dim;
+        bytes[offset + 2] = 0;
+        bytes[offset + 3] = 0;
+
+        int pos = offset + HEADER_SIZE;
+        for (float v : vector) {
+            int bits = Float.floatToRawIntBits(v);
+            bytes[pos] = (byte) (bits >>> 24);
+            bytes[pos + 1] = (byte) (bits >>> 16);
+            bytes[pos + 2] = (byte) (bits >>> 8);
+            bytes[pos + 3] = (byte) bits;
+            pos += Float.BYTES;
+        }
+    }
+
+    @Override
+    public void setByteValue(byte[] value, int offset) throws SQLException {
+        if (value.length - offset < HEADER_SIZE) {
+            throw new SQLException("Некорректный бинарный формат vector: слишком короткое значение");
+        }
+        int dim = ((value[offset] & 0xFF) << 8) | (value[offset + 1] & 0xFF);
+        if (value.length - offset < HEADER_SIZE + dim * Float.BYTES) {
+            throw new SQLException("Некорректный бинарный формат vector: ожидалось " + dim + " элементов");
+        }
+
+        float[] result = new float[dim];
+        int pos = offset + HEADER_SIZE;
+        for (int i = 0; i < dim; i++) {
+            int bits = ((value[pos] & 0xFF) << 24)
+                    | ((value[pos + 1] & 0xFF) << 16)
+                    | ((value[pos + 2] & 0xFF) << 8)
+                    | (value[pos + 3] & 0xFF);
+            result[i] = Float.intBitsToFloat(bits);
+            pos += Float.BYTES;
+        }
+        this.vector = result;
+    }
+
+    // ====================================================================
+    // ТЕКСТОВЫЙ ФОРМАТ (fallback)
+    // ====================================================================
+
+    @Override
+    public String getValue() {
+        return vector == null ? null : VectorUtils.formatVectorForPostgres(vector);
+    }
+
+    @Override
+    public void setValue(String value) throws SQLException {
+        this.vector = parse(value);
+    }
+
+    /**
+     * Разбирает текстовую форму "[0.1,0.2,...]": одна подстрока на элемент, без split и trim
+     */
+    static float[] parse(String value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+
+        int start = value.indexOf('[');
+        int end = value.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            throw new SQLException("Некорректный текстовый формат vector: " + value);
+        }
+        if (end - start == 1) {
+            return new float[0];
+        }
+
+        int count = 1;
+        for (int i = start + 1; i < end; i++) {
+            if (value.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        float[] result = new float[count];
+        int tokenStart = start + 1;
+        int index = 0;
+        for (int i = start + 1; i <= end; i++) {
+            if (i == end || value.charAt(i) == ',') {
+                int from = tokenStart;
+                int to = i;
+                while (from < to && value.charAt(from) <= ' ') {
+                    from++;
+                }
+                while (to > from && value.charAt(to - 1) <= ' ') {
+                    to--;
+                }
+                try {
+                    result[index++] = Float.parseFloat(value.substring(from, to));
+                } catch (NumberFormatException e) {
+                    throw new SQLException("Некорректный элемент vector: " + value.substring(tokenStart, i), e);
+                }
+                tokenStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isNull() {
+        return vector == null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof PgVector other)) return false;
+        return Arrays.equals(vector, other.vector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vector);
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        PgVector copy = (PgVector) super.clone();
+        copy.vector = vector == null ? null : vector.clone();
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+}
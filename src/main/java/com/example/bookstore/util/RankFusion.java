@@ -0,0 +1,69 @@
+package com.example.bookstore.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reciprocal Rank Fusion: объединение нескольких ранжированных списков
+ *
+ * score(d) = Σ weight_i / (k + rank_i(d)), rank с единицы.
+ * Учитываются только позиции, поэтому оценки разных поисковиков
+ * (косинусное расстояние, ts_rank) не нужно приводить к одной шкале.
+ */
+public final class RankFusion {
+
+    /**
+     * Стандартная константа сглаживания из оригинальной статьи о RRF
+     */
+    public static final int DEFAULT_K = 60;
+
+    private RankFusion() {
+    }
+
+    /**
+     * Объединяет списки с равными весами
+     */
+    public static <T> List<T> fuse(List<List<T>> rankings, int k, int limit) {
+        double[] weights = new double[rankings.size()];
+        Arrays.fill(weights, 1.0);
+        return fuse(rankings, weights, k, limit);
+    }
+
+    /**
+     * Объединяет списки с весами; дубликаты внутри одного списка учитываются по первой позиции
+     *
+     * @return до limit элементов по убыванию итоговой оценки; при равенстве —
+     * в порядке первого появления
+     */
+    public static <T> List<T> fuse(List<List<T>> rankings, double[] weights, int k, int limit) {
+        if (weights.length != rankings.size()) {
+            throw new IllegalArgumentException("Количество весов не совпадает с количеством списков");
+        }
+
+        Map<T, Double> scores = new HashMap<>();
+        Map<T, Integer> firstSeen = new HashMap<>();
+        for (int list = 0; list < rankings.size(); list++) {
+            List<T> ranking = rankings.get(list);
+            Map<T, Boolean> seenInList = new HashMap<>();
+            int rank = 0;
+            for (T item : ranking) {
+                if (seenInList.putIfAbsent(item, Boolean.TRUE) != null) {
+                    continue;
+                }
+                rank++;
+                scores.merge(item, weights[list] / (k + rank), Double::sum);
+                firstSeen.putIfAbsent(item, firstSeen.size());
+            }
+        }
+
+        List<T> result = new ArrayList<>(scores.keySet());
+        result.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(firstSeen.get(a), firstSeen.get(b));
+        });
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.bookstore.util;
+
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Ограниченное число повторов с экспоненциальной задержкой
+ *
+ * По умолчанию повторяются только конфликты параллельного доступа
+ * (ConcurrencyFailureException: оптимистическая блокировка, deadlock,
+ * таймаут блокировки, ошибка сериализации). Бизнес-ошибки пробрасываются сразу.
+ */
+public class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final Predicate<Throwable> retryable;
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis) {
+        this(maxAttempts, initialBackoffMillis, e -> e instanceof ConcurrencyFailureException);
+    }
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, Predicate<Throwable> retryable) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Нужна хотя бы одна попытка");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.retryable = retryable;
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (RuntimeException e) {
+                if (attempt >= maxAttempts || !retryable.test(e)) {
+                    throw e;
+                }
+                System.err.println("Конфликт параллельного доступа, попытка " + attempt + " из " + maxAttempts
+                        + ": " + e.getMessage());
+                sleep(attempt);
+            }
+        }
+    }
+
+    /**
+     * Задержка initial * 2^(attempt-1) со случайным разбросом, чтобы повторы не совпадали
+     */
+    private void sleep(int attempt) {
+        if (initialBackoffMillis <= 0) {
+            return;
+        }
+        long backoff = initialBackoffMillis << Math.min(attempt - 1, 10);
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        try {
+            Thread.sleep(backoff / 2 + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Повтор прерван", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.bookstore.util;
+
+/**
+ * Скалярная реализация векторных ядер (запасной вариант без Vector API)
+ * Суммы накапливаются в double, как в исходных циклах VectorUtils
+ */
+class ScalarVectorKernels implements VectorKernels.Kernel {
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return (float) sum;
+    }
+
+    @Override
+    public double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        if (normA == 0.0 || normB == 0.0) {
+            return 0.0;
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    @Override
+    public float squareDistance(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+        }
+        return (float) sum;
+    }
+
+    @Override
+    public float sumOfSquares(float[] a) {
+        double sum = 0.0;
+        for (float v : a) {
+            sum += v * v;
+        }
+        return (float) sum;
+    }
+
+    @Override
+    public void scale(float[] source, float factor, float[] target) {
+        for (int i = 0; i < source.length; i++) {
+            target[i] = source[i] * factor;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
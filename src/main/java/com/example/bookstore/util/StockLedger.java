@@ -0,0 +1,183 @@
+package com.example.bookstore.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Счетчики доступного остатка в памяти с резервированием без блокировок
+ *
+ * available книги — сколько еще можно зарезервировать из доли остатка, выделенной
+ * этому экземпляру приложения (CAS, никогда не уходит ниже нуля). Доля пополняется add()
+ * и возвращается takeAll(); где она хранится в БД, решает StockReservationService.
+ * Резерв живет ttl; неподтвержденный резерв по истечении срока возвращается в available.
+ */
+public class StockLedger {
+
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<Long, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+
+    public StockLedger(long ttl, TimeUnit unit) {
+        this(ttl, unit, System::nanoTime);
+    }
+
+    public StockLedger(long ttl, TimeUnit unit, LongSupplier clock) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = clock;
+    }
+
+    private record Hold(SortedMap<Long, Integer> quantities, long expiresAt) {
+    }
+
+    /**
+     * Добавляет единицы, выделенные экземпляру, в доступный остаток
+     */
+    public void add(Long bookId, long units) {
+        counters.computeIfAbsent(bookId, id -> new AtomicLong()).addAndGet(units);
+    }
+
+    /**
+     * Забирает весь доступный (не зарезервированный) остаток книги
+     *
+     * @return сколько единиц забрано
+     */
+    public long takeAll(Long bookId) {
+        AtomicLong available = counters.get(bookId);
+        return available == null ? 0 : available.getAndSet(0);
+    }
+
+    /**
+     * Доля книги больше не принадлежит экземпляру: резервы с ней уже не подтвердятся
+     */
+    public void untrack(Long bookId) {
+        counters.remove(bookId);
+    }
+
+    public Set<Long> trackedIds() {
+        return Set.copyOf(counters.keySet());
+    }
+
+    public long available(Long bookId) {
+        AtomicLong available = counters.get(bookId);
+        return available == null ? 0 : available.get();
+    }
+
+    /**
+     * Резервирует все позиции или ни одной
+     *
+     * @return id первой книги, которой не хватило, или null, если резерв создан
+     */
+    public Long tryReserve(String holdId, SortedMap<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> taken = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            AtomicLong available = counters.get(entry.getKey());
+            if (available == null || !tryTake(available, entry.getValue())) {
+                rollback(taken);
+                return entry.getKey();
+            }
+            taken.add(entry);
+        }
+        holds.put(holdId, new Hold(quantities, clock.getAsLong() + ttlNanos));
+        return null;
+    }
+
+    private void rollback(List<Map.Entry<Long, Integer>> taken) {
+        for (Map.Entry<Long, Integer> entry : taken) {
+            giveBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static boolean tryTake(AtomicLong available, int quantity) {
+        while (true) {
+            long current = available.get();
+            if (current < quantity) {
+                return false;
+            }
+            if (available.compareAndSet(current, current - quantity)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Превращает резерв в продажу из доли экземпляра
+     *
+     * @return false, если резерва нет (истек или отменен) или доля одной из книг
+     *         больше не принадлежит экземпляру — тогда товар нужно списать в БД
+     */
+    public boolean confirm(String holdId) {
+        Hold hold = holds.remove(holdId);
+        if (hold == null) {
+            return false;
+        }
+        for (Long bookId : hold.quantities().keySet()) {
+            if (!counters.containsKey(bookId)) {
+                giveBack(hold);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Отменяет подтвержденную продажу (заказ так и не сохранился): товар возвращается в available
+     */
+    public void cancelSale(SortedMap<Long, Integer> quantities) {
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            giveBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Возвращает зарезервированное количество в доступный остаток
+     */
+    public boolean release(String holdId) {
+        Hold hold = holds.remove(holdId);
+        if (hold == null) {
+            return false;
+        }
+        giveBack(hold);
+        return true;
+    }
+
+    /**
+     * Снимает просроченные резервы, возвращает их количество
+     */
+    public int expire() {
+        long now = clock.getAsLong();
+        int expired = 0;
+        for (Map.Entry<String, Hold> entry : holds.entrySet()) {
+            // remove(key, value) — подтверждение или отмена могли успеть раньше
+            if (entry.getValue().expiresAt() - now <= 0 && holds.remove(entry.getKey(), entry.getValue())) {
+                giveBack(entry.getValue());
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private void giveBack(Hold hold) {
+        for (Map.Entry<Long, Integer> entry : hold.quantities().entrySet()) {
+            giveBack(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void giveBack(Long bookId, int quantity) {
+        AtomicLong available = counters.get(bookId);
+        if (available != null) {
+            available.addAndGet(quantity);
+        }
+    }
+
+    public int activeHolds() {
+        return holds.size();
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.bookstore.util;
+
+/**
+ * Векторные ядра: скалярное произведение, косинус, L2, нормализация
+ *
+ * При старте выбирается реализация:
+ * - SIMD на Vector API (jdk.incubator.vector), если модуль подключен
+ *   (--add-modules jdk.incubator.vector) и не отключен -Dbookstore.vector.simd=false
+ * - скалярная — во всех остальных случаях
+ *
+ * SIMD-класс загружается через рефлексию, поэтому без модуля приложение
+ * работает на скалярной реализации, а не падает с NoClassDefFoundError.
+ */
+public final class VectorKernels {
+
+    private static final String SIMD_MODULE = "jdk.incubator.vector";
+    private static final String SIMD_IMPLEMENTATION = "com.example.bookstore.util.SimdVectorKernels";
+
+    /**
+     * Операции, которые реализует каждое ядро; длины массивов проверяет VectorKernels
+     */
+    interface Kernel {
+        float dot(float[] a, float[] b);
+
+        /**
+         * Косинус за один проход: скалярное произведение и обе нормы
+         */
+        double cosine(float[] a, float[] b);
+
+        float squareDistance(float[] a, float[] b);
+
+        float sumOfSquares(float[] a);
+
+        void scale(float[] source, float factor, float[] target);
+    }
+
+    private static final Kernel KERNEL = select();
+
+    private VectorKernels() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkSameLength(a, b);
+        return KERNEL.dot(a, b);
+    }
+
+    /**
+     * Косинусное сходство от -1 до 1; 0 для нулевых векторов и разных размерностей
+     */
+    public static double cosineSimilarity(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            return 0.0;
+        }
+        return KERNEL.cosine(a, b);
+    }
+
+    /**
+     * Евклидово расстояние; Double.MAX_VALUE для разных размерностей
+     */
+    public static double euclideanDistance(float[] a, float[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            return Double.MAX_VALUE;
+        }
+        return Math.sqrt(KERNEL.squareDistance(a, b));
+    }
+
+    /**
+     * Новый вектор единичной длины; нулевой вектор возвращается как есть
+     */
+    public static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return vector;
+        }
+        double norm = Math.sqrt(KERNEL.sumOfSquares(vector));
+        if (norm == 0.0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        KERNEL.scale(vector, (float) (1.0 / norm), normalized);
+        return normalized;
+    }
+
+    /**
+     * Название выбранной реализации (для логов и статистики)
+     */
+    public static String implementation() {
+        return KERNEL.toString();
+    }
+
+    private static void checkSameLength(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Разная размерность векторов: " + a.length + " и " + b.length);
+        }
+    }
+
+    private static Kernel select() {
+        boolean enabled = Boolean.parseBoolean(System.getProperty("bookstore.vector.simd", "true"));
+        if (enabled && ModuleLayer.boot().findModule(SIMD_MODULE).isPresent()) {
+            try {
+                Kernel kernel = (Kernel) Class.forName(SIMD_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+                System.out.println("✅ Векторные ядра: " + kernel);
+                return kernel;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("SIMD-ядра недоступны, используется скалярная реализация: " + e);
+            }
+        }
+        return new ScalarVectorKernels();
+    }
+}
@@ -63,25 +63,7 @@ public class VectorUtils {
      * Возвращает значение от -1 до 1 (чем ближе к 1, тем более похожи)
      */
     public static double cosineSimilarity(float[] vec1, float[] vec2) {
-        if (vec1 == null || vec2 == null || vec1.length != vec2.length) {
-            return 0.0;
-        }
-
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-
-        for (int i = 0; i < vec1.length; i++) {
-            dotProduct += vec1[i] * vec2[i];
-            norm1 += vec1[i] * vec1[i];
-            norm2 += vec2[i] * vec2[i];
-        }
-
-        if (norm1 == 0.0 || norm2 == 0.0) {
-            return 0.0;
-        }
-
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+        return VectorKernels.cosineSimilarity(vec1, vec2);
     }
 
     /**
@@ -89,43 +71,14 @@ public class VectorUtils {
      * Чем меньше, тем более похожи
      */
     public static double euclideanDistance(float[] vec1, float[] vec2) {
-        if (vec1 == null || vec2 == null || vec1.length != vec2.length) {
-            return Double.MAX_VALUE;
-        }
-
-        double sum = 0.0;
-        for (int i = 0; i < vec1.length; i++) {
-            double diff = vec1[i] - vec2[i];
-            sum += diff * diff;
-        }
-
-        return Math.sqrt(sum);
+        return VectorKernels.euclideanDistance(vec1, vec2);
     }
 
     /**
      * Нормализует вектор (длина = 1)
      */
     public static float[] normalize(float[] vector) {
-        if (vector == null || vector.length == 0) {
-            return vector;
-        }
-
-        double norm = 0.0;
-        for (float v : vector) {
-            norm += v * v;
-        }
-        norm = Math.sqrt(norm);
-
-        if (norm == 0.0) {
-            return vector;
-        }
-
-        float[] normalized = new float[vector.length];
-        for (int i = 0; i < vector.length; i++) {
-            normalized[i] = (float) (vector[i] / norm);
-        }
-
-        return normalized;
+        return VectorKernels.normalize(vector);
     }
 
     /**
@@ -240,6 +193,22 @@ public class VectorUtils {
         return resized;
     }
 
+    /**
+     * Приводит вектор модели к размерности хранения
+     * Лишние координаты отбрасываются, а остаток нормализуется заново (так усекаются
+     * Matryoshka-эмбеддинги); недостающие заполняются нулями — косинус от этого не меняется
+     */
+    public static float[] fitDimension(float[] vector, int dimension) {
+        if (vector == null) {
+            return new float[dimension];
+        }
+        if (vector.length == dimension) {
+            return vector;
+        }
+        float[] resized = resize(vector, dimension);
+        return vector.length > dimension ? normalize(resized) : resized;
+    }
+
     /**
      * Форматирует вектор для отладки (показывает первые N элементов)
      */
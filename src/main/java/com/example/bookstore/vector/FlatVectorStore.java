@@ -0,0 +1,195 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorKernels;
+import com.example.bookstore.util.VectorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Точный поиск полным перебором по матрице векторов вне кучи
+ *
+ * Все векторы нормализованы и лежат подряд в OffHeapVectorStorage без дыр:
+ * при удалении на освободившееся место переносится последний вектор.
+ * Поиск считает скалярное произведение с каждым вектором и отбирает top-k
+ * в NodeHeap (без упаковки и без объектов на кандидата). Большие матрицы
+ * сканируются параллельно блоками, у каждого блока своя куча.
+ *
+ * Полнота 100%; для каталога до нескольких сотен тысяч книг задержка
+ * сопоставима с HNSW, а вставка и удаление — O(1). Объем ограничен direct-памятью
+ * JVM (около 3 ГБ на 500 тыс. векторов размерности 1536).
+ */
+public class FlatVectorStore implements VectorIndex {
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 16_384;
+    private static final int MIN_BLOCK = 1024;
+
+    private final OffHeapVectorStorage storage;
+    private final int parallelThreshold;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> idToOrdinal = new HashMap<>();
+    private long[] ordinalToId = new long[1024];
+
+    public FlatVectorStore(int dimension) {
+        this(dimension, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * @param parallelThreshold с какого числа векторов поиск идет параллельно
+     */
+    public FlatVectorStore(int dimension, int parallelThreshold) {
+        this.storage = new OffHeapVectorStorage(dimension);
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+    }
+
+    @Override
+    public void upsert(long id, float[] vector) {
+        float[] normalized = VectorUtils.normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = idToOrdinal.get(id);
+            if (existing != null) {
+                storage.set(existing, normalized);
+                return;
+            }
+
+            int ordinal = storage.add(normalized);
+            if (ordinal == ordinalToId.length) {
+                ordinalToId = Arrays.copyOf(ordinalToId, ordinal + (ordinal >> 1) + 1);
+            }
+            ordinalToId[ordinal] = id;
+            idToOrdinal.put(id, ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = idToOrdinal.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            // Последний вектор занимает освободившееся место — матрица остается сплошной
+            int last = storage.size() - 1;
+            if (ordinal != last) {
+                storage.move(last, ordinal);
+                long movedId = ordinalToId[last];
+                ordinalToId[ordinal] = movedId;
+                idToOrdinal.put(movedId, ordinal);
+            }
+            storage.removeLast();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] get(long id) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = idToOrdinal.get(id);
+            return ordinal == null ? null : storage.get(ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> search(float[] query, int k) {
+        if (k <= 0 || query == null || query.length != storage.dimension()) {
+            return List.of();
+        }
+        float[] normalized = VectorUtils.normalize(query);
+
+        lock.readLock().lock();
+        try {
+            int size = storage.size();
+            if (size == 0) {
+                return List.of();
+            }
+            int limit = Math.min(k, size);
+
+            NodeHeap top;
+            if (size < parallelThreshold) {
+                top = scan(normalized, 0, size, limit);
+            } else {
+                // По блоку на ядро, но не мельче MIN_BLOCK векторов
+                int blocks = Math.min(Runtime.getRuntime().availableProcessors(),
+                        Math.max(1, size / MIN_BLOCK));
+                int blockSize = (size + blocks - 1) / blocks;
+                top = IntStream.range(0, blocks)
+                        .parallel()
+                        .mapToObj(block -> scan(normalized, block * blockSize,
+                                Math.min(size, (block + 1) * blockSize), limit))
+                        .reduce((left, right) -> merge(left, right, limit))
+                        .orElseThrow();
+            }
+
+            int[] ordered = top.drainBestFirst();
+            List<Long> result = new ArrayList<>(ordered.length);
+            for (int ordinal : ordered) {
+                result.add(ordinalToId[ordinal]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return storage.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Объем памяти вне кучи, занятый векторами
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return storage.allocatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * top-k блока [from, to): min-куча, на вершине — наименее похожий из отобранных
+     *
+     * Вектор копируется в один буфер на блок пакетным чтением, а скалярное
+     * произведение считает VectorKernels (SIMD, если доступен Vector API):
+     * поэлементное чтение FloatBuffer в несколько раз медленнее.
+     */
+    private NodeHeap scan(float[] query, int from, int to, int k) {
+        NodeHeap top = NodeHeap.minHeap(k + 1);
+        float[] row = new float[query.length];
+        for (int ordinal = from; ordinal < to; ordinal++) {
+            storage.read(ordinal, row);
+            top.offer(ordinal, VectorKernels.dot(row, query), k);
+        }
+        return top;
+    }
+
+    private static NodeHeap merge(NodeHeap target, NodeHeap source, int k) {
+        while (!source.isEmpty()) {
+            float score = source.topScore();
+            target.offer(source.pop(), score, k);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,598 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW-граф (Hierarchical Navigable Small World) в памяти приложения
+ *
+ * Векторы нормализуются при добавлении и хранятся вне кучи,
+ * поэтому косинусное сходство сводится к скалярному произведению.
+ * Поиск выполняется параллельно под read-lock, вставки сериализуются.
+ * Замененные и удаленные векторы помечаются как удаленные: они остаются
+ * в графе для навигации, но не попадают в результаты. Повторная запись того же
+ * вектора ничего не меняет.
+ *
+ * Когда удаленных узлов становится больше половины живых (и не меньше
+ * MIN_DELETED_TO_COMPACT), фоновый поток строит новый граф по живым векторам
+ * в новом хранилище. Векторы читаются из старого графа порциями под коротким
+ * read-lock, сама перестройка идет без блокировки; изменения, сделанные за это
+ * время, догоняются в новый граф, и под write-lock остается только подмена графа.
+ */
+public class HnswVectorIndex implements VectorIndex {
+
+    private static final int MIN_DELETED_TO_COMPACT = 1024;
+    // Столько векторов копируется из старого графа за один захват read-lock
+    private static final int COPY_BATCH = 1024;
+    // Остаток изменений, который догоняется уже под write-lock при подмене графа
+    private static final int SWAP_CATCH_UP = 256;
+    private static final int MAX_CATCH_UP_ROUNDS = 10;
+
+    private final int dimension;
+    private final int m;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final SplittableRandom random;
+    private final ExecutorService compactor;
+
+    // Все поля ниже — под lock
+    private Graph graph;
+    // id, измененные во время фоновой перестройки; null — перестройка не идет
+    private Set<Long> changedDuringCompaction;
+    private Future<?> compaction;
+
+    public HnswVectorIndex(int dimension, int m, int efConstruction, int efSearch) {
+        this(dimension, m, efConstruction, efSearch, 42L);
+    }
+
+    public HnswVectorIndex(int dimension, int m, int efConstruction, int efSearch, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("Параметр m должен быть не меньше 2");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxConnectionsLevel0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+        this.graph = new Graph(1024, random.split());
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hnsw-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    @Override
+    public void upsert(long id, float[] vector) {
+        float[] normalized = VectorUtils.normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            if (!graph.upsert(id, normalized)) {
+                return;
+            }
+            if (changedDuringCompaction != null) {
+                changedDuringCompaction.add(id);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (graph.remove(id)) {
+                if (changedDuringCompaction != null) {
+                    changedDuringCompaction.add(id);
+                }
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] get(long id) {
+        lock.readLock().lock();
+        try {
+            return graph.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> search(float[] query, int k) {
+        if (k <= 0 || query == null || query.length != dimension) {
+            return List.of();
+        }
+        float[] normalized = VectorUtils.normalize(query);
+
+        lock.readLock().lock();
+        try {
+            return graph.search(normalized, k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return graph.idToOrdinal.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Число векторов в хранилище вместе с удаленными
+     */
+    public int storedVectors() {
+        lock.readLock().lock();
+        try {
+            return graph.storage.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ждет завершения фоновых перестроек (для тестов и остановки)
+     */
+    void awaitCompaction() throws Exception {
+        while (true) {
+            Future<?> running;
+            lock.readLock().lock();
+            try {
+                running = compaction;
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (running == null) {
+                return;
+            }
+            running.get(1, TimeUnit.MINUTES);
+        }
+    }
+
+    // ====================================================================
+    // ФОНОВАЯ ПЕРЕСТРОЙКА
+    // ====================================================================
+
+    /**
+     * Под write-lock: запускает перестройку, если удаленных слишком много и она еще не идет
+     */
+    private void compactIfNeeded() {
+        int deletedCount = graph.deleted.cardinality();
+        if (compaction != null || deletedCount < MIN_DELETED_TO_COMPACT
+                || deletedCount <= graph.idToOrdinal.size() / 2) {
+            return;
+        }
+
+        // Снимок живых узлов: старый граф до подмены только дописывается, номера остаются верными
+        Graph source = graph;
+        long[] ids = new long[source.idToOrdinal.size()];
+        int[] ordinals = new int[ids.length];
+        int index = 0;
+        for (Map.Entry<Long, Integer> entry : source.idToOrdinal.entrySet()) {
+            ids[index] = entry.getKey();
+            ordinals[index++] = entry.getValue();
+        }
+        Graph target = new Graph(Math.max(1024, ids.length), random.split());
+        try {
+            compaction = compactor.submit(() -> compact(source, target, ids, ordinals, deletedCount));
+            changedDuringCompaction = new HashSet<>();
+        } catch (RejectedExecutionException e) {
+            // Индекс останавливается — граф остается как есть
+        }
+    }
+
+    private void compact(Graph source, Graph target, long[] ids, int[] ordinals, int removed) {
+        long start = System.currentTimeMillis();
+        try {
+            float[][] batch = new float[COPY_BATCH][];
+            for (int from = 0; from < ids.length; from += COPY_BATCH) {
+                int to = Math.min(ids.length, from + COPY_BATCH);
+                lock.readLock().lock();
+                try {
+                    for (int i = from; i < to; i++) {
+                        batch[i - from] = source.storage.get(ordinals[i]);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                for (int i = from; i < to; i++) {
+                    target.upsert(ids[i], batch[i - from]);
+                }
+            }
+
+            // Догоняем изменения, сделанные во время перестройки, пока их не останется немного
+            for (int round = 0; round < MAX_CATCH_UP_ROUNDS; round++) {
+                Set<Long> changed;
+                lock.writeLock().lock();
+                try {
+                    if (changedDuringCompaction.size() <= SWAP_CATCH_UP) {
+                        break;
+                    }
+                    changed = changedDuringCompaction;
+                    changedDuringCompaction = new HashSet<>();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                catchUp(source, target, changed);
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (Long id : changedDuringCompaction) {
+                    applyChange(source, target, id, source.get(id));
+                }
+                graph = target;
+                changedDuringCompaction = null;
+                compaction = null;
+                // Пока шла перестройка, удаленных могло снова накопиться
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            System.out.println("HNSW-граф перестроен без " + removed + " удаленных векторов за "
+                    + (System.currentTimeMillis() - start) + " мс");
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringCompaction = null;
+                compaction = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            System.err.println("Ошибка перестройки HNSW-графа: " + e.getMessage());
+        }
+    }
+
+    private void catchUp(Graph source, Graph target, Set<Long> changed) {
+        List<Long> ids = new ArrayList<>(changed);
+        float[][] batch = new float[COPY_BATCH][];
+        for (int from = 0; from < ids.size(); from += COPY_BATCH) {
+            int to = Math.min(ids.size(), from + COPY_BATCH);
+            lock.readLock().lock();
+            try {
+                for (int i = from; i < to; i++) {
+                    batch[i - from] = source.get(ids.get(i));
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            for (int i = from; i < to; i++) {
+                applyChange(source, target, ids.get(i), batch[i - from]);
+            }
+        }
+    }
+
+    private static void applyChange(Graph source, Graph target, long id, float[] vector) {
+        if (vector == null) {
+            target.remove(id);
+        } else {
+            target.upsert(id, vector);
+        }
+    }
+
+    // ====================================================================
+    // ГРАФ
+    // ====================================================================
+
+    /**
+     * Граф с хранилищем векторов; не потокобезопасен — используется под lock
+     * или, при перестройке, только фоновым потоком до подмены
+     */
+    private final class Graph {
+
+        private final OffHeapVectorStorage storage;
+        private final SplittableRandom random;
+
+        private final Map<Long, Integer> idToOrdinal = new HashMap<>();
+        private long[] ordinalToId;
+        private int[][][] links;
+        private final BitSet deleted = new BitSet();
+
+        private int entryPoint = -1;
+        private int maxLevel = -1;
+
+        Graph(int capacity, SplittableRandom random) {
+            this.storage = new OffHeapVectorStorage(dimension, capacity);
+            this.random = random;
+            this.ordinalToId = new long[capacity];
+            this.links = new int[capacity][][];
+        }
+
+        /**
+         * @return false, если у id уже этот же вектор
+         */
+        boolean upsert(long id, float[] normalized) {
+            Integer previous = idToOrdinal.get(id);
+            if (previous != null) {
+                if (Arrays.equals(storage.get(previous), normalized)) {
+                    return false;
+                }
+                deleted.set(previous);
+            }
+
+            int ordinal = storage.add(normalized);
+            ensureCapacity(ordinal + 1);
+            ordinalToId[ordinal] = id;
+            idToOrdinal.put(id, ordinal);
+            insert(ordinal, normalized);
+            return true;
+        }
+
+        boolean remove(long id) {
+            Integer ordinal = idToOrdinal.remove(id);
+            if (ordinal == null) {
+                return false;
+            }
+            deleted.set(ordinal);
+            return true;
+        }
+
+        float[] get(long id) {
+            Integer ordinal = idToOrdinal.get(id);
+            return ordinal == null ? null : storage.get(ordinal);
+        }
+
+        List<Long> search(float[] normalized, int k) {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+
+            int current = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                current = greedySearch(normalized, current, level);
+            }
+
+            // Запас на удаленные узлы, которые отбрасываются после обхода; пока идет
+            // фоновая перестройка, их может быть много — тогда обход повторяется с большим ef
+            int ef = Math.max(efSearch, k) + Math.min(deleted.cardinality(), k);
+            int wanted = Math.min(k, idToOrdinal.size());
+            while (true) {
+                int[] ordered = searchLayer(normalized, current, ef, 0).drainBestFirst();
+                List<Long> result = new ArrayList<>(k);
+                for (int ordinal : ordered) {
+                    if (!deleted.get(ordinal)) {
+                        result.add(ordinalToId[ordinal]);
+                        if (result.size() == k) {
+                            break;
+                        }
+                    }
+                }
+                if (result.size() >= wanted || ef >= storage.size()) {
+                    return result;
+                }
+                ef *= 2;
+            }
+        }
+
+        private void insert(int ordinal, float[] vector) {
+            int level = randomLevel();
+            int[][] nodeLinks = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                nodeLinks[l] = new int[maxConnections(l) + 1];
+            }
+            links[ordinal] = nodeLinks;
+
+            if (entryPoint < 0) {
+                entryPoint = ordinal;
+                maxLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedySearch(vector, current, l);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                NodeHeap candidates = searchLayer(vector, current, efConstruction, l);
+                int[] ordered = candidates.drainBestFirst();
+                current = ordered[0];
+
+                int[] selected = selectNeighbors(vector, ordered, m);
+                setNeighbors(ordinal, l, selected);
+
+                for (int neighbor : selected) {
+                    addConnection(neighbor, ordinal, l);
+                }
+            }
+
+            if (level > maxLevel) {
+                entryPoint = ordinal;
+                maxLevel = level;
+            }
+        }
+
+        /**
+         * Эвристика выбора соседей из статьи HNSW: кандидат берется, если он ближе
+         * к новому узлу, чем к любому уже выбранному соседу. Оставшиеся места
+         * заполняются отброшенными кандидатами, чтобы граф не терял связность.
+         */
+        private int[] selectNeighbors(float[] vector, int[] orderedCandidates, int limit) {
+            if (orderedCandidates.length <= limit) {
+                return orderedCandidates;
+            }
+
+            int[] selected = new int[limit];
+            int count = 0;
+            boolean[] taken = new boolean[orderedCandidates.length];
+
+            for (int i = 0; i < orderedCandidates.length && count < limit; i++) {
+                int candidate = orderedCandidates[i];
+                float similarityToNew = storage.dot(candidate, vector);
+                boolean keep = true;
+                for (int j = 0; j < count; j++) {
+                    if (storage.dot(candidate, selected[j]) > similarityToNew) {
+                        keep = false;
+                        break;
+                    }
+                }
+                if (keep) {
+                    selected[count++] = candidate;
+                    taken[i] = true;
+                }
+            }
+
+            for (int i = 0; i < orderedCandidates.length && count < limit; i++) {
+                if (!taken[i]) {
+                    selected[count++] = orderedCandidates[i];
+                }
+            }
+            return selected;
+        }
+
+        private void addConnection(int node, int newNeighbor, int level) {
+            int[] nodeLinks = links[node][level];
+            int count = nodeLinks[0];
+            int capacity = nodeLinks.length - 1;
+
+            if (count < capacity) {
+                nodeLinks[count + 1] = newNeighbor;
+                nodeLinks[0] = count + 1;
+                return;
+            }
+
+            // Переполнение: пересобираем список соседей той же эвристикой
+            float[] nodeVector = storage.get(node);
+            NodeHeap candidates = NodeHeap.maxHeap(capacity + 1);
+            for (int i = 1; i <= count; i++) {
+                candidates.push(nodeLinks[i], storage.dot(nodeLinks[i], nodeVector));
+            }
+            candidates.push(newNeighbor, storage.dot(newNeighbor, nodeVector));
+
+            int[] selected = selectNeighbors(nodeVector, candidates.drainBestFirst(), capacity);
+            setNeighbors(node, level, selected);
+        }
+
+        private void setNeighbors(int node, int level, int[] neighbors) {
+            int[] nodeLinks = links[node][level];
+            nodeLinks[0] = neighbors.length;
+            System.arraycopy(neighbors, 0, nodeLinks, 1, neighbors.length);
+        }
+
+        private int randomLevel() {
+            double uniform = 1.0 - random.nextDouble();
+            return (int) (-Math.log(uniform) * levelMultiplier);
+        }
+
+        private int maxConnections(int level) {
+            return level == 0 ? maxConnectionsLevel0 : m;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > links.length) {
+                int newCapacity = Math.max(required, links.length + (links.length >> 1));
+                links = Arrays.copyOf(links, newCapacity);
+                ordinalToId = Arrays.copyOf(ordinalToId, newCapacity);
+            }
+        }
+
+        // ====================================================================
+        // ОБХОД ГРАФА
+        // ====================================================================
+
+        /**
+         * Жадный спуск на верхних уровнях: переходим к лучшему соседу, пока это возможно
+         */
+        private int greedySearch(float[] query, int start, int level) {
+            int current = start;
+            float best = storage.dot(current, query);
+            boolean improved = true;
+
+            while (improved) {
+                improved = false;
+                int[] nodeLinks = links[current][level];
+                for (int i = 1; i <= nodeLinks[0]; i++) {
+                    int neighbor = nodeLinks[i];
+                    float similarity = storage.dot(neighbor, query);
+                    if (similarity > best) {
+                        best = similarity;
+                        current = neighbor;
+                        improved = true;
+                    }
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Поиск ef ближайших узлов на одном уровне графа.
+         * Возвращает min-кучу результатов (на вершине — наименее похожий).
+         */
+        private NodeHeap searchLayer(float[] query, int start, int ef, int level) {
+            BitSet visited = new BitSet(storage.size());
+            NodeHeap candidates = NodeHeap.maxHeap(ef * 2);
+            NodeHeap results = NodeHeap.minHeap(ef + 1);
+
+            float startScore = storage.dot(start, query);
+            visited.set(start);
+            candidates.push(start, startScore);
+            results.push(start, startScore);
+
+            while (!candidates.isEmpty()) {
+                float candidateScore = candidates.topScore();
+                if (results.size() >= ef && candidateScore < results.topScore()) {
+                    break;
+                }
+                int candidate = candidates.pop();
+
+                int[][] candidateLinks = links[candidate];
+                if (level >= candidateLinks.length) {
+                    continue;
+                }
+                int[] neighbors = candidateLinks[level];
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    int neighbor = neighbors[i];
+                    if (visited.get(neighbor)) {
+                        continue;
+                    }
+                    visited.set(neighbor);
+
+                    float similarity = storage.dot(neighbor, query);
+                    if (results.size() < ef || similarity > results.topScore()) {
+                        candidates.push(neighbor, similarity);
+                        results.offer(neighbor, similarity, ef);
+                    }
+                }
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.bookstore.vector;
+
+import java.util.Arrays;
+
+/**
+ * Двоичная куча пар (узел, оценка) на примитивных массивах
+ *
+ * Используется при обходе графа и при отборе top-k, чтобы не создавать
+ * объект на каждого кандидата. В min-куче на вершине худшая оценка,
+ * в max-куче — лучшая.
+ */
+final class NodeHeap {
+
+    private final boolean maxHeap;
+    private int[] nodes;
+    private float[] scores;
+    private int size;
+
+    private NodeHeap(int capacity, boolean maxHeap) {
+        this.maxHeap = maxHeap;
+        this.nodes = new int[Math.max(1, capacity)];
+        this.scores = new float[Math.max(1, capacity)];
+    }
+
+    static NodeHeap minHeap(int capacity) {
+        return new NodeHeap(capacity, false);
+    }
+
+    static NodeHeap maxHeap(int capacity) {
+        return new NodeHeap(capacity, true);
+    }
+
+    void push(int node, float score) {
+        if (size == nodes.length) {
+            int newCapacity = nodes.length * 2;
+            nodes = Arrays.copyOf(nodes, newCapacity);
+            scores = Arrays.copyOf(scores, newCapacity);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(score, scores[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    /**
+     * Добавляет кандидата в кучу ограниченного размера (для min-кучи top-k):
+     * если куча заполнена, кандидат заменяет вершину только если он лучше
+     */
+    boolean offer(int node, float score, int limit) {
+        if (size < limit) {
+            push(node, score);
+            return true;
+        }
+        if (maxHeap ? score >= scores[0] : score <= scores[0]) {
+            return false;
+        }
+        nodes[0] = node;
+        scores[0] = score;
+        siftDown();
+        return true;
+    }
+
+    int pop() {
+        int top = nodes[0];
+        size--;
+        if (size > 0) {
+            nodes[0] = nodes[size];
+            scores[0] = scores[size];
+            siftDown();
+        }
+        return top;
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    float topScore() {
+        return scores[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Извлекает все элементы, от лучшей оценки к худшей
+     */
+    int[] drainBestFirst() {
+        int[] result = new int[size];
+        if (maxHeap) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = pop();
+            }
+        } else {
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = pop();
+            }
+        }
+        return result;
+    }
+
+    private void siftDown() {
+        int node = nodes[0];
+        float score = scores[0];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(scores[right], scores[child])) {
+                child = right;
+            }
+            if (!before(scores[child], score)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    private boolean before(float a, float b) {
+        return maxHeap ? a > b : a < b;
+    }
+}
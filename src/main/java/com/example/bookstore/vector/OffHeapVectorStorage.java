@@ -0,0 +1,221 @@
+package com.example.bookstore.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Хранилище векторов фиксированной размерности вне кучи (direct ByteBuffer)
+ *
+ * Векторы лежат подряд и адресуются плотным порядковым номером (ordinal),
+ * поэтому GC не сканирует эти данные, а вычисление сходства не создает объектов.
+ * Память выделяется блоками до CHUNK_BYTES (степень двойки векторов в блоке):
+ * один ByteBuffer ограничен 2 ГБ, а при росте копируется только последний блок.
+ * Предел — Integer.MAX_VALUE векторов и объем direct-памяти JVM (-XX:MaxDirectMemorySize).
+ * Класс не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+public class OffHeapVectorStorage {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long CHUNK_BYTES = 64L << 20;
+
+    private final int dimension;
+    private final int chunkShift;
+    private final int chunkMask;
+    private FloatBuffer[] chunks;
+    private int chunkCount;
+    private int lastChunkCapacity;
+    private int size;
+
+    public OffHeapVectorStorage(int dimension) {
+        this(dimension, INITIAL_CAPACITY);
+    }
+
+    public OffHeapVectorStorage(int dimension, int initialCapacity) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Размерность должна быть положительной: " + dimension);
+        }
+        this.dimension = dimension;
+        int vectorsPerChunk = Integer.highestOneBit((int) Math.max(1, CHUNK_BYTES / ((long) dimension * Float.BYTES)));
+        this.chunkShift = Integer.numberOfTrailingZeros(vectorsPerChunk);
+        this.chunkMask = vectorsPerChunk - 1;
+
+        // Полные блоки под initialCapacity и последний блок под остаток
+        int capacity = Math.max(1, initialCapacity);
+        int fullChunks = (capacity - 1) >> chunkShift;
+        this.chunks = new FloatBuffer[fullChunks + 1];
+        for (int i = 0; i < fullChunks; i++) {
+            chunks[i] = allocate(vectorsPerChunk);
+        }
+        this.lastChunkCapacity = capacity - (fullChunks << chunkShift);
+        chunks[fullChunks] = allocate(lastChunkCapacity);
+        this.chunkCount = fullChunks + 1;
+    }
+
+    /**
+     * Добавляет вектор и возвращает его порядковый номер
+     */
+    public int add(float[] vector) {
+        checkDimension(vector);
+        if (size == capacity()) {
+            grow();
+        }
+        int ordinal = size++;
+        chunk(ordinal).put(offset(ordinal), vector);
+        return ordinal;
+    }
+
+    /**
+     * Перезаписывает вектор по порядковому номеру
+     */
+    public void set(int ordinal, float[] vector) {
+        checkDimension(vector);
+        checkOrdinal(ordinal);
+        chunk(ordinal).put(offset(ordinal), vector);
+    }
+
+    /**
+     * Удаляет последний вектор; вместе с move() позволяет держать хранилище без дыр
+     */
+    public void removeLast() {
+        if (size == 0) {
+            throw new IndexOutOfBoundsException("Хранилище пусто");
+        }
+        size--;
+    }
+
+    /**
+     * Копирует вектор from на место to
+     */
+    public void move(int from, int to) {
+        checkOrdinal(from);
+        checkOrdinal(to);
+        FloatBuffer sourceChunk = chunk(from);
+        FloatBuffer targetChunk = chunk(to);
+        int source = offset(from);
+        int target = offset(to);
+        for (int i = 0; i < dimension; i++) {
+            targetChunk.put(target + i, sourceChunk.get(source + i));
+        }
+    }
+
+    public float[] get(int ordinal) {
+        checkOrdinal(ordinal);
+        float[] vector = new float[dimension];
+        chunk(ordinal).get(offset(ordinal), vector);
+        return vector;
+    }
+
+    /**
+     * Копирует вектор в готовый массив (для перебора без выделения памяти на каждый вектор)
+     */
+    public void read(int ordinal, float[] target) {
+        chunk(ordinal).get(offset(ordinal), target, 0, dimension);
+    }
+
+    /**
+     * Скалярное произведение сохраненного вектора и запроса
+     */
+    public float dot(int ordinal, float[] query) {
+        FloatBuffer floats = chunk(ordinal);
+        int base = offset(ordinal);
+        float sum = 0.0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += floats.get(base + i) * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Скалярное произведение двух сохраненных векторов
+     */
+    public float dot(int first, int second) {
+        FloatBuffer firstChunk = chunk(first);
+        FloatBuffer secondChunk = chunk(second);
+        int a = offset(first);
+        int b = offset(second);
+        float sum = 0.0f;
+        for (int i = 0; i < dimension; i++) {
+            sum += firstChunk.get(a + i) * secondChunk.get(b + i);
+        }
+        return sum;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Объем памяти вне кучи, занятый хранилищем
+     */
+    public long allocatedBytes() {
+        return (long) capacity() * dimension * Float.BYTES;
+    }
+
+    private int capacity() {
+        return ((chunkCount - 1) << chunkShift) + lastChunkCapacity;
+    }
+
+    private FloatBuffer chunk(int ordinal) {
+        return chunks[ordinal >>> chunkShift];
+    }
+
+    private int offset(int ordinal) {
+        return (ordinal & chunkMask) * dimension;
+    }
+
+    /**
+     * Последний блок растет в 1.5 раза до полного размера, затем добавляется новый полный блок
+     */
+    private void grow() {
+        int vectorsPerChunk = chunkMask + 1;
+        if (lastChunkCapacity < vectorsPerChunk) {
+            int newCapacity = (int) Math.min(vectorsPerChunk, lastChunkCapacity + (lastChunkCapacity >> 1) + 1L);
+            FloatBuffer grown = allocate(newCapacity);
+            FloatBuffer source = chunks[chunkCount - 1].duplicate();
+            source.position(0).limit((size - ((chunkCount - 1) << chunkShift)) * dimension);
+            grown.put(source);
+            grown.clear();
+            chunks[chunkCount - 1] = grown;
+            lastChunkCapacity = newCapacity;
+            return;
+        }
+
+        if ((long) chunkCount * vectorsPerChunk + vectorsPerChunk > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Превышено максимальное число векторов в хранилище: " + size);
+        }
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        chunks[chunkCount++] = allocate(vectorsPerChunk);
+        lastChunkCapacity = vectorsPerChunk;
+    }
+
+    private FloatBuffer allocate(int vectors) {
+        try {
+            return ByteBuffer.allocateDirect(vectors * dimension * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        } catch (OutOfMemoryError e) {
+            throw new IllegalStateException("Не хватает direct-памяти для " + size + " векторов размерности "
+                    + dimension + ", увеличьте -XX:MaxDirectMemorySize", e);
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Ожидался вектор размерности " + dimension);
+        }
+    }
+
+    private void checkOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= size) {
+            throw new IndexOutOfBoundsException("Нет вектора с номером " + ordinal);
+        }
+    }
+}
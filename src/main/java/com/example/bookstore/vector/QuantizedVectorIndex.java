@@ -0,0 +1,308 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorKernels;
+import com.example.bookstore.util.VectorUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Поиск по сжатым векторам с точным переранжированием
+ *
+ * В памяти лежат только коды VectorQuantizer (int8 — 1 байт на координату,
+ * PQ — 1 байт на отрезок) одним сплошным массивом. Поиск идет в два прохода:
+ * 1. приближенные оценки по всем кодам, отбор k × rerankFactor кандидатов;
+ * 2. точные векторы кандидатов загружаются через ExactVectors (из book_embedding),
+ *    и по косинусному сходству остаются лучшие k.
+ * rerankFactor задает компромисс полноты и задержки; 1 — без второго прохода.
+ *
+ * Квантователь обучается, когда накоплено trainingSample векторов (не меньше
+ * MIN_TRAINING_SAMPLE): на меньшей выборке шкалы int8 и кодовые книги PQ
+ * получаются неточными для всего каталога. До обучения векторы хранятся как есть
+ * и поиск идет точным перебором — для каталога меньше выборки это и быстро, и точно.
+ * Обучение идет без блокировки на копии выборки в потоке, добавившем последний вектор;
+ * под write-lock только публикуется квантователь и кодируются накопленные векторы.
+ */
+public class QuantizedVectorIndex implements VectorIndex {
+
+    /**
+     * Источник исходных векторов для переранжирования
+     */
+    @FunctionalInterface
+    public interface ExactVectors {
+        Map<Long, float[]> load(List<Long> ids);
+    }
+
+    /**
+     * PQ обучает 256 центроидов на отрезок — выборка меньше этого бессмысленна
+     */
+    public static final int MIN_TRAINING_SAMPLE = 256;
+
+    private final int dimension;
+    private final Function<List<float[]>, VectorQuantizer> trainer;
+    private final int trainingSample;
+    private final int rerankFactor;
+    private final ExactVectors exactVectors;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, float[]> untrained = new LinkedHashMap<>();
+    private VectorQuantizer quantizer;
+    private boolean training;
+
+    private final Map<Long, Integer> idToOrdinal = new HashMap<>();
+    private long[] ordinalToId = new long[1024];
+    private byte[] codes = new byte[0];
+    private int size;
+
+    /**
+     * @param trainer      обучение квантователя по выборке нормализованных векторов
+     * @param exactVectors null — без переранжирования
+     */
+    public QuantizedVectorIndex(int dimension, Function<List<float[]>, VectorQuantizer> trainer,
+                                int trainingSample, int rerankFactor, ExactVectors exactVectors) {
+        this.dimension = dimension;
+        this.trainer = trainer;
+        this.trainingSample = Math.max(MIN_TRAINING_SAMPLE, trainingSample);
+        this.rerankFactor = Math.max(1, rerankFactor);
+        this.exactVectors = exactVectors;
+    }
+
+    @Override
+    public void upsert(long id, float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Ожидался вектор размерности " + dimension);
+        }
+        float[] normalized = VectorUtils.normalize(vector);
+
+        List<float[]> sample = null;
+        lock.writeLock().lock();
+        try {
+            if (quantizer == null) {
+                untrained.put(id, normalized);
+                if (!training && untrained.size() >= trainingSample) {
+                    training = true;
+                    sample = new ArrayList<>(untrained.values());
+                }
+            } else {
+                Integer ordinal = idToOrdinal.get(id);
+                if (ordinal == null) {
+                    ordinal = size++;
+                    ensureCapacity(size);
+                    ordinalToId[ordinal] = id;
+                    idToOrdinal.put(id, ordinal);
+                }
+                quantizer.encode(normalized, codes, ordinal * quantizer.codeSize());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (sample != null) {
+            train(sample);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            if (quantizer == null) {
+                untrained.remove(id);
+                return;
+            }
+            Integer ordinal = idToOrdinal.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            // Как в FlatVectorStore: последний код переносится на место удаленного
+            int last = --size;
+            if (ordinal != last) {
+                int codeSize = quantizer.codeSize();
+                System.arraycopy(codes, last * codeSize, codes, ordinal * codeSize, codeSize);
+                long movedId = ordinalToId[last];
+                ordinalToId[ordinal] = movedId;
+                idToOrdinal.put(movedId, ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * После обучения исходные векторы не хранятся: null, и BookEmbeddingStore читает вектор из БД
+     */
+    @Override
+    public float[] get(long id) {
+        lock.readLock().lock();
+        try {
+            float[] vector = quantizer == null ? untrained.get(id) : null;
+            return vector == null ? null : vector.clone();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Long> search(float[] query, int k) {
+        if (k <= 0 || query == null || query.length != dimension) {
+            return List.of();
+        }
+        float[] normalized = VectorUtils.normalize(query);
+
+        boolean rerank = exactVectors != null && rerankFactor > 1;
+        List<Long> candidates;
+        lock.readLock().lock();
+        try {
+            if (quantizer == null) {
+                return scanUntrained(normalized, k);
+            }
+            if (size == 0) {
+                return List.of();
+            }
+            candidates = scan(normalized, rerank ? k * rerankFactor : k);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return rerank ? rerank(normalized, candidates, k) : candidates;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return quantizer == null ? untrained.size() : size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Память под коды и параметры квантователя (байты)
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return quantizer == null ? 0 : (long) size * quantizer.codeSize() + quantizer.parameterBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Long> scan(float[] query, int limit) {
+        int codeSize = quantizer.codeSize();
+        VectorQuantizer.Scorer scorer = quantizer.scorer(query);
+        NodeHeap top = NodeHeap.minHeap(Math.min(limit, size) + 1);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            top.offer(ordinal, scorer.score(codes, ordinal * codeSize), limit);
+        }
+
+        int[] ordered = top.drainBestFirst();
+        List<Long> ids = new ArrayList<>(ordered.length);
+        for (int ordinal : ordered) {
+            ids.add(ordinalToId[ordinal]);
+        }
+        return ids;
+    }
+
+    /**
+     * Точный перебор векторов, накопленных до обучения (переранжирование не нужно)
+     */
+    private List<Long> scanUntrained(float[] query, int limit) {
+        long[] ids = new long[untrained.size()];
+        NodeHeap top = NodeHeap.minHeap(Math.min(limit, ids.length) + 1);
+        int index = 0;
+        for (Map.Entry<Long, float[]> entry : untrained.entrySet()) {
+            ids[index] = entry.getKey();
+            top.offer(index++, VectorKernels.dot(entry.getValue(), query), limit);
+        }
+
+        int[] ordered = top.drainBestFirst();
+        List<Long> result = new ArrayList<>(ordered.length);
+        for (int i : ordered) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Точные оценки кандидатов; кандидаты, удаленные между проходами, пропускаются
+     */
+    private List<Long> rerank(float[] query, List<Long> candidates, int k) {
+        Map<Long, float[]> exact = exactVectors.load(candidates);
+        NodeHeap top = NodeHeap.minHeap(k + 1);
+        for (int i = 0; i < candidates.size(); i++) {
+            float[] vector = exact.get(candidates.get(i));
+            if (vector != null && vector.length == dimension) {
+                top.offer(i, (float) VectorKernels.cosineSimilarity(vector, query), k);
+            }
+        }
+
+        int[] ordered = top.drainBestFirst();
+        List<Long> result = new ArrayList<>(ordered.length);
+        for (int index : ordered) {
+            result.add(candidates.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Обучает квантователь на копии выборки без блокировки, затем под write-lock публикует его
+     * и кодирует все накопленные векторы, включая добавленные во время обучения
+     */
+    private void train(List<float[]> sample) {
+        long start = System.currentTimeMillis();
+        VectorQuantizer trained;
+        try {
+            trained = trainer.apply(sample);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                // Следующий upsert попробует обучить снова
+                training = false;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            quantizer = trained;
+            training = false;
+            int codeSize = quantizer.codeSize();
+            ensureCapacity(untrained.size());
+            for (Map.Entry<Long, float[]> entry : untrained.entrySet()) {
+                int ordinal = size++;
+                ordinalToId[ordinal] = entry.getKey();
+                idToOrdinal.put(entry.getKey(), ordinal);
+                quantizer.encode(entry.getValue(), codes, ordinal * codeSize);
+            }
+            untrained.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        System.out.println("Квантователь обучен на " + sample.size() + " векторах за "
+                + (System.currentTimeMillis() - start) + " мс (" + trained.codeSize() + " байт на вектор)");
+    }
+
+    private void ensureCapacity(int vectors) {
+        if (vectors > ordinalToId.length) {
+            ordinalToId = Arrays.copyOf(ordinalToId, Math.max(vectors, ordinalToId.length + (ordinalToId.length >> 1)));
+        }
+        long required = (long) ordinalToId.length * quantizer.codeSize();
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Превышен максимальный размер массива кодов");
+        }
+        if (codes.length < required) {
+            codes = Arrays.copyOf(codes, (int) required);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.bookstore.vector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Скалярное квантование int8: каждая координата — один байт
+ *
+ * Для каждой координаты по обучающей выборке запоминаются min и шаг
+ * (max - min) / 255, значение кодируется как round((x - min) / шаг).
+ * Тогда q·x ≈ Σ q[i]·min[i] + Σ (q[i]·шаг[i])·code[i]: первая сумма и веса
+ * считаются один раз на запрос, по кодам остается одно умножение на координату.
+ * Сжатие в 4 раза относительно float32.
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+
+    private static final int LEVELS = 255;
+
+    private final float[] min;
+    private final float[] step;
+
+    private ScalarQuantizer(float[] min, float[] step) {
+        this.min = min;
+        this.step = step;
+    }
+
+    /**
+     * Обучает шкалы по выборке нормализованных векторов
+     */
+    public static ScalarQuantizer train(List<float[]> sample, int dimension) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("Пустая обучающая выборка");
+        }
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] vector : sample) {
+            for (int i = 0; i < dimension; i++) {
+                min[i] = Math.min(min[i], vector[i]);
+                max[i] = Math.max(max[i], vector[i]);
+            }
+        }
+
+        float[] step = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            // Постоянная координата: любой шаг дает точное восстановление
+            step[i] = max[i] > min[i] ? (max[i] - min[i]) / LEVELS : 1.0f;
+        }
+        return new ScalarQuantizer(min, step);
+    }
+
+    @Override
+    public int dimension() {
+        return min.length;
+    }
+
+    @Override
+    public int codeSize() {
+        return min.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code, int offset) {
+        for (int i = 0; i < min.length; i++) {
+            // Значения вне обученного диапазона прижимаются к краям
+            int level = Math.round((vector[i] - min[i]) / step[i]);
+            code[offset + i] = (byte) Math.max(0, Math.min(LEVELS, level));
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        int dimension = min.length;
+        float[] weights = new float[dimension];
+        float base = 0.0f;
+        for (int i = 0; i < dimension; i++) {
+            weights[i] = query[i] * step[i];
+            base += query[i] * min[i];
+        }
+        float bias = base;
+
+        return (codes, offset) -> {
+            float sum = bias;
+            for (int i = 0; i < dimension; i++) {
+                sum += weights[i] * (codes[offset + i] & 0xFF);
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public long parameterBytes() {
+        return 2L * min.length * Float.BYTES;
+    }
+}
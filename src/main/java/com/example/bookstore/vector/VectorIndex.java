@@ -0,0 +1,37 @@
+package com.example.bookstore.vector;
+
+import java.util.List;
+
+/**
+ * Индекс для поиска ближайших соседей по косинусному сходству
+ *
+ * Реализации хранят векторы книг в памяти приложения и позволяют
+ * выполнять kNN-поиск без обращения к PostgreSQL.
+ */
+public interface VectorIndex {
+
+    /**
+     * Добавляет или заменяет вектор книги
+     */
+    void upsert(long id, float[] vector);
+
+    /**
+     * Удаляет вектор книги из индекса
+     */
+    void remove(long id);
+
+    /**
+     * Возвращает сохраненный (нормализованный) вектор книги или null
+     */
+    float[] get(long id);
+
+    /**
+     * Возвращает id до k ближайших книг, от самой похожей к наименее похожей
+     */
+    List<Long> search(float[] query, int k);
+
+    /**
+     * Количество книг в индексе
+     */
+    int size();
+}
@@ -0,0 +1,37 @@
+package com.example.bookstore.vector;
+
+/**
+ * Сжатие нормализованных векторов в компактные коды фиксированной длины
+ *
+ * Сходство запроса с кодом оценивается без распаковки: по запросу один раз
+ * строится Scorer (веса или таблицы расстояний), который затем применяется
+ * ко всем кодам подряд.
+ */
+public interface VectorQuantizer {
+
+    int dimension();
+
+    /**
+     * Длина кода одного вектора в байтах
+     */
+    int codeSize();
+
+    /**
+     * Кодирует вектор в code[offset .. offset + codeSize())
+     */
+    void encode(float[] vector, byte[] code, int offset);
+
+    /**
+     * Оценщик приближенного скалярного произведения для одного запроса
+     */
+    Scorer scorer(float[] query);
+
+    /**
+     * Объем обученных параметров (шкал, кодовых книг) в байтах
+     */
+    long parameterBytes();
+
+    interface Scorer {
+        float score(byte[] codes, int offset);
+    }
+}
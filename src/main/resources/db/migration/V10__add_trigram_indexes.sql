@@ -0,0 +1,7 @@
+-- Триграммные индексы для поиска по подстроке (LOWER(x) LIKE '%...%')
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_book_title_trgm ON book USING GIN (LOWER(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_book_author_trgm ON book USING GIN (LOWER(author) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_book_genre_trgm ON book USING GIN (LOWER(genre) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_book_description_trgm ON book USING GIN (LOWER(description) gin_trgm_ops);
@@ -0,0 +1,13 @@
+-- Полнотекстовый поиск по книгам: русская и английская морфология
+-- Вес: A — название, B — автор, C — жанр, D — описание
+ALTER TABLE book ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', COALESCE(title, '')), 'A') ||
+    setweight(to_tsvector('english', COALESCE(title, '')), 'A') ||
+    setweight(to_tsvector('simple', COALESCE(author, '')), 'B') ||
+    setweight(to_tsvector('russian', COALESCE(genre, '')), 'C') ||
+    setweight(to_tsvector('english', COALESCE(genre, '')), 'C') ||
+    setweight(to_tsvector('russian', COALESCE(description, '')), 'D') ||
+    setweight(to_tsvector('english', COALESCE(description, '')), 'D')
+) STORED;
+
+CREATE INDEX idx_book_search_vector ON book USING GIN (search_vector);
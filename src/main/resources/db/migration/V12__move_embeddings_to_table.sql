@@ -0,0 +1,28 @@
+-- Эмбеддинги переносятся из book в отдельную таблицу:
+-- загрузка сущности Book больше не тянет 1536 float (~6 КБ) на каждую строку
+CREATE TABLE book_embedding (
+    book_id BIGINT PRIMARY KEY REFERENCES book(id) ON DELETE CASCADE,
+    embedding vector(1536) NOT NULL,
+    content_hash VARCHAR(64),
+    model VARCHAR(100),
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO book_embedding (book_id, embedding, content_hash, model)
+SELECT id, embedding, embedding_hash, embedding_model
+FROM book
+WHERE embedding IS NOT NULL;
+
+DROP INDEX IF EXISTS book_embedding_idx;
+ALTER TABLE book DROP COLUMN embedding;
+ALTER TABLE book DROP COLUMN embedding_hash;
+ALTER TABLE book DROP COLUMN embedding_model;
+
+-- HNSW-индекс с теми же параметрами, что и в V6
+CREATE INDEX book_embedding_idx ON book_embedding
+USING hnsw (embedding vector_cosine_ops)
+WITH (m = 16, ef_construction = 64);
+
+COMMENT ON TABLE book_embedding IS 'Vector embeddings of books for semantic search (1536 dimensions)';
+COMMENT ON COLUMN book_embedding.content_hash IS 'SHA-256 of embedding model id and Book.getTextForEmbedding()';
+COMMENT ON INDEX book_embedding_idx IS 'HNSW index for fast approximate nearest neighbor search';
@@ -0,0 +1,3 @@
+-- Шаг последовательности order_items совпадает с allocationSize в OrderItem:
+-- Hibernate выделяет id блоками и может вставлять позиции заказа одним JDBC-пакетом
+ALTER SEQUENCE order_items_id_seq INCREMENT BY 50;
@@ -0,0 +1,3 @@
+-- Версия для оптимистической блокировки при редактировании каталога
+-- Остаток (stock) меняется только атомарными UPDATE и версию не увеличивает
+ALTER TABLE book ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,12 @@
+-- Корзины вне HTTP-сессии (bookstore.cart.store=jdbc)
+-- cart_id — случайный UUID из cookie CART_ID
+CREATE TABLE cart_item (
+    cart_id VARCHAR(36) NOT NULL,
+    book_id BIGINT NOT NULL REFERENCES book(id) ON DELETE CASCADE,
+    quantity INTEGER NOT NULL CHECK (quantity > 0),
+    price NUMERIC(10, 2) NOT NULL,
+    added_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (cart_id, book_id)
+);
+
@@ -0,0 +1,6 @@
+-- Keyset-пагинация истории заказов: WHERE user_id = ? AND (created_at, id) < (?, ?)
+-- ORDER BY created_at DESC, id DESC читается из индекса без сортировки
+CREATE INDEX idx_orders_user_created ON orders(user_id, created_at DESC, id DESC);
+
+-- Покрывается первым столбцом нового индекса
+DROP INDEX IF EXISTS idx_orders_user_id;
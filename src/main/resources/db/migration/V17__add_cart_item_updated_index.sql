@@ -0,0 +1,3 @@
+-- Очистка брошенных корзин: WHERE updated_at < ? читается по индексу,
+-- проверка остальных позиций корзины идет по первичному ключу (cart_id, book_id)
+CREATE INDEX idx_cart_item_updated_at ON cart_item(updated_at);
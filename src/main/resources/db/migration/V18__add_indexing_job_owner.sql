@@ -0,0 +1,5 @@
+-- Задачу индексации выполняет один экземпляр приложения: owner захватывает ее
+-- условным UPDATE и продлевает heartbeat_at; задачу упавшего экземпляра
+-- подхватывает другой, когда heartbeat_at устаревает
+ALTER TABLE indexing_job ADD COLUMN owner VARCHAR(64);
+ALTER TABLE indexing_job ADD COLUMN heartbeat_at TIMESTAMP;
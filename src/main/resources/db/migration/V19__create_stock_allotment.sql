@@ -0,0 +1,21 @@
+-- Резервирование остатков в памяти (bookstore.inventory.reservations.enabled):
+-- экземпляр приложения переносит часть book.stock в свою долю и продает только из нее.
+-- Продажа пишется в stock_sale в транзакции заказа; непроданный остаток доли —
+-- units минус ее продажи. Доли экземпляра, переставшего продлевать heartbeat_at,
+-- возвращаются в book.stock другими экземплярами
+CREATE TABLE stock_allotment (
+    owner        VARCHAR(64) NOT NULL,
+    book_id      BIGINT NOT NULL REFERENCES book(id) ON DELETE CASCADE,
+    units        BIGINT NOT NULL,
+    heartbeat_at TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (owner, book_id)
+);
+
+CREATE TABLE stock_sale (
+    id       BIGSERIAL PRIMARY KEY,
+    owner    VARCHAR(64) NOT NULL,
+    book_id  BIGINT NOT NULL REFERENCES book(id) ON DELETE CASCADE,
+    quantity INT NOT NULL
+);
+
+CREATE INDEX idx_stock_sale_owner_book ON stock_sale(owner, book_id);
@@ -0,0 +1,21 @@
+-- Фоновые задачи индексации с контрольными точками
+-- last_book_id позволяет продолжить задачу после перезапуска приложения
+CREATE TABLE indexing_job (
+    id BIGSERIAL PRIMARY KEY,
+    job_type VARCHAR(50) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    last_book_id BIGINT NOT NULL DEFAULT 0,
+    processed BIGINT NOT NULL DEFAULT 0,
+    failed BIGINT NOT NULL DEFAULT 0,
+    total BIGINT NOT NULL DEFAULT 0,
+    error_message TEXT,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    finished_at TIMESTAMP
+);
+
+-- Не более одной активной (выполняется или на паузе) задачи каждого типа
+CREATE UNIQUE INDEX idx_indexing_job_active ON indexing_job(job_type)
+    WHERE status IN ('RUNNING', 'PAUSED');
+
+CREATE INDEX idx_indexing_job_type_created ON indexing_job(job_type, created_at DESC);
@@ -0,0 +1,7 @@
+-- Хеш текста, по которому построен эмбеддинг, и идентификатор модели
+-- Позволяют пропускать книги, у которых ни текст, ни модель не изменились
+ALTER TABLE book ADD COLUMN embedding_hash VARCHAR(64);
+ALTER TABLE book ADD COLUMN embedding_model VARCHAR(100);
+
+COMMENT ON COLUMN book.embedding_hash IS 'SHA-256 of embedding model id and Book.getTextForEmbedding()';
+COMMENT ON COLUMN book.embedding_model IS 'Embedding model that produced book.embedding';
@@ -0,0 +1,10 @@
+-- Предвычисленные похожие книги: top-N id по косинусной близости эмбеддингов
+-- Страница книги получает соседей одним поиском по первичному ключу
+CREATE TABLE book_neighbors (
+    book_id BIGINT PRIMARY KEY REFERENCES book(id) ON DELETE CASCADE,
+    neighbor_ids BIGINT[] NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Для инвалидации строк, в которых книга указана соседом (neighbor_ids && ARRAY[...])
+CREATE INDEX idx_book_neighbors_neighbor_ids ON book_neighbors USING GIN (neighbor_ids);
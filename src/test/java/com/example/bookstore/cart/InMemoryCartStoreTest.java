@@ -0,0 +1,78 @@
+package com.example.bookstore.cart;
+
+import com.example.bookstore.dto.CartItem;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryCartStoreTest {
+
+    private final InMemoryCartStore store = new InMemoryCartStore(100, 1, TimeUnit.HOURS);
+
+    @Test
+    void mergesQuantitiesByBookAndKeepsInsertionOrder() {
+        store.add("cart", item(2L, 1));
+        store.add("cart", item(1L, 1));
+        store.add("cart", item(2L, 3));
+
+        List<CartItem> items = store.getItems("cart");
+        assertThat(items).extracting(CartItem::getBookId).containsExactly(2L, 1L);
+        assertThat(items.get(0).getQuantity()).isEqualTo(4);
+    }
+
+    @Test
+    void updateToZeroRemovesItem() {
+        store.add("cart", item(1L, 2));
+        store.updateQuantity("cart", 1L, 5);
+        assertThat(store.getItems("cart").get(0).getQuantity()).isEqualTo(5);
+
+        store.updateQuantity("cart", 1L, 0);
+        assertThat(store.getItems("cart")).isEmpty();
+    }
+
+    @Test
+    void cartsAreIsolatedAndReturnedItemsAreCopies() {
+        store.add("a", item(1L, 1));
+        store.add("b", item(1L, 7));
+
+        store.getItems("a").get(0).setQuantity(100);
+
+        assertThat(store.getItems("a").get(0).getQuantity()).isEqualTo(1);
+        assertThat(store.getItems("b").get(0).getQuantity()).isEqualTo(7);
+
+        store.clear("a");
+        assertThat(store.getItems("a")).isEmpty();
+        assertThat(store.getItems("b")).hasSize(1);
+    }
+
+    @Test
+    void ttlCountsFromLastAccess() {
+        AtomicLong now = new AtomicLong();
+        InMemoryCartStore expiring = new InMemoryCartStore(100, 100, TimeUnit.NANOSECONDS, now::get);
+        expiring.add("cart", item(1L, 1));
+
+        // Корзину смотрят чаще, чем раз в ttl, — она не истекает
+        for (int i = 1; i <= 5; i++) {
+            now.set(i * 90L);
+            assertThat(expiring.getItems("cart")).hasSize(1);
+        }
+
+        now.addAndGet(100);
+        assertThat(expiring.getItems("cart")).isEmpty();
+    }
+
+    private static CartItem item(Long bookId, int quantity) {
+        return CartItem.builder()
+                .bookId(bookId)
+                .title("Book " + bookId)
+                .author("Author")
+                .price(new BigDecimal("10.00"))
+                .quantity(quantity)
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bookstore.config;
+
+import com.example.bookstore.util.PgVector;
+import com.example.bookstore.util.VectorUtils;
+import org.junit.jupiter.api.Test;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.jdbc.PgConnection;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Соединения из пула отдают vector как PgVector и передают его в бинарном виде
+ */
+@SpringBootTest
+class PgVectorConfigTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void connectionsRegisterVectorTypeWithBinaryTransfer() throws Exception {
+        float[] original = VectorUtils.createRandomVector(1536, 3);
+
+        try (Connection connection = dataSource.getConnection()) {
+            PgConnection pgConnection = connection.unwrap(PgConnection.class);
+            int oid = pgConnection.getTypeInfo().getPGType("vector");
+            QueryExecutor executor = pgConnection.getQueryExecutor();
+
+            assertThat(pgConnection.getTypeInfo().getPGobject("vector")).isEqualTo(PgVector.class);
+            assertThat(executor.useBinaryForSend(oid)).isTrue();
+            assertThat(executor.useBinaryForReceive(oid)).isTrue();
+
+            try (PreparedStatement ps = connection.prepareStatement("SELECT CAST(? AS vector)")) {
+                ps.setObject(1, new PgVector(original));
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    Object value = rs.getObject(1);
+
+                    assertThat(value).isInstanceOf(PgVector.class);
+                    assertThat(((PgVector) value).toArray()).containsExactly(original);
+                }
+            }
+        }
+    }
+}
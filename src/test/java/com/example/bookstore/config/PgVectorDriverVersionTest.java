@@ -0,0 +1,33 @@
+package com.example.bookstore.config;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.core.TypeInfo;
+import org.postgresql.jdbc.PgConnection;
+import org.postgresql.util.DriverInfo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * PgVectorConfig опирается на внутренний API pgjdbc. При обновлении драйвера тест падает:
+ * нужно прогнать PgVectorConfigTest на новой версии и поправить здесь проверенную версию
+ */
+class PgVectorDriverVersionTest {
+
+    private static final String VERIFIED_VERSION = "42.6";
+
+    @Test
+    void driverIsTheVerifiedVersion() {
+        assertThat(DriverInfo.MAJOR_VERSION + "." + DriverInfo.MINOR_VERSION)
+                .as("PgVectorConfig проверен на pgjdbc " + VERIFIED_VERSION + ", установлен " + DriverInfo.DRIVER_VERSION)
+                .isEqualTo(VERIFIED_VERSION);
+    }
+
+    @Test
+    void internalApiIsPresent() throws NoSuchMethodException {
+        assertThat(PgConnection.class.getMethod("addDataType", String.class, Class.class)).isNotNull();
+        assertThat(QueryExecutor.class.getMethod("addBinarySendOid", int.class)).isNotNull();
+        assertThat(QueryExecutor.class.getMethod("addBinaryReceiveOid", int.class)).isNotNull();
+        assertThat(TypeInfo.class.getMethod("getPGobject", String.class)).isNotNull();
+    }
+}
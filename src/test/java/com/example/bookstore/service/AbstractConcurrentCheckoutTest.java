@@ -0,0 +1,133 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.CartItem;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.User;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельное оформление заказов на одни и те же книги; наследники задают способ списания остатка
+ */
+abstract class AbstractConcurrentCheckoutTest {
+
+    protected static final int STOCK = 20;
+    private static final int THREADS = 16;
+    private static final int ORDERS_PER_THREAD = 4;
+
+    @Autowired
+    protected OrderService orderService;
+
+    @Autowired
+    protected BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    protected Book first;
+    protected Book second;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        user = userRepository.save(User.builder()
+                .username("stress-" + suffix)
+                .password("-")
+                .email("stress-" + suffix + "@example.com")
+                .build());
+        first = bookRepository.save(book("Stress A " + suffix));
+        second = bookRepository.save(book("Stress B " + suffix));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Заказы и позиции удаляются каскадом вместе с пользователем
+        userRepository.deleteById(user.getId());
+        bookRepository.deleteById(first.getId());
+        bookRepository.deleteById(second.getId());
+    }
+
+    @Test
+    void concurrentCheckoutsNeverOversell() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            // Половина корзин перечисляет книги в обратном порядке — проверка на взаимные блокировки
+            boolean reversed = t % 2 == 1;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                    List<CartItem> cart = reversed
+                            ? List.of(item(second), item(first))
+                            : List.of(item(first), item(second));
+                    try {
+                        orderService.createOrder(user, cart, "addr", "phone", "mail@example.com");
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(succeeded.get()).isEqualTo(STOCK);
+        assertThat(rejected.get()).isEqualTo(THREADS * ORDERS_PER_THREAD - STOCK);
+        assertSoldOut();
+    }
+
+    /**
+     * Проверка остатков после того, как все STOCK экземпляров проданы
+     */
+    protected void assertSoldOut() {
+        assertThat(bookRepository.findById(first.getId()).orElseThrow().getStock()).isZero();
+        assertThat(bookRepository.findById(second.getId()).orElseThrow().getStock()).isZero();
+    }
+
+    private static Book book(String title) {
+        return Book.builder()
+                .title(title)
+                .author("Test")
+                .genre("Test")
+                .price(new BigDecimal("10.00"))
+                .stock(STOCK)
+                .build();
+    }
+
+    private static CartItem item(Book book) {
+        return CartItem.builder()
+                .bookId(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .price(book.getPrice())
+                .quantity(1)
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.dto.CartItem;
+import com.example.bookstore.dto.OrderHistoryPage;
+import com.example.bookstore.dto.OrderSummary;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Order;
+import com.example.bookstore.model.OrderItem;
+import com.example.bookstore.model.User;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число SQL-запросов при показе истории и деталей заказа не зависит от числа заказов и позиций
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class OrderQueryCountTest {
+
+    private static final int ORDERS = 5;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User user;
+    private final List<Book> books = new ArrayList<>();
+    private Long lastOrderId;
+
+    @BeforeEach
+    void setUp() {
+        String suffix = String.valueOf(System.nanoTime());
+        user = userRepository.save(User.builder()
+                .username("queries-" + suffix)
+                .password("-")
+                .email("queries-" + suffix + "@example.com")
+                .build());
+        for (int i = 0; i < 3; i++) {
+            books.add(bookRepository.save(Book.builder()
+                    .title("Query Count " + i + " " + suffix)
+                    .author("Test")
+                    .genre("Test")
+                    .price(new BigDecimal("10.00"))
+                    .stock(100)
+                    .build()));
+        }
+        for (int i = 0; i < ORDERS; i++) {
+            List<CartItem> cart = new ArrayList<>();
+            for (Book book : books) {
+                cart.add(CartItem.builder()
+                        .bookId(book.getId())
+                        .title(book.getTitle())
+                        .author(book.getAuthor())
+                        .price(book.getPrice())
+                        .quantity(1)
+                        .build());
+            }
+            lastOrderId = orderService.createOrder(user, cart, "addr", "phone", "mail@example.com").getId();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        // Заказы и позиции удаляются каскадом вместе с пользователем
+        userRepository.deleteById(user.getId());
+        for (Book book : books) {
+            bookRepository.deleteById(book.getId());
+        }
+    }
+
+    @Test
+    void orderHistoryPageUsesSingleQuery() {
+        Statistics statistics = statistics();
+
+        OrderHistoryPage page = orderService.getUserOrders(user, null, 2);
+
+        assertThat(page.getOrders()).hasSize(2);
+        assertThat(page.getNextCursor()).isNotNull();
+        assertThat(page.getOrders()).allSatisfy(order -> assertThat(order.getItemCount()).isEqualTo(books.size()));
+        // Одна выборка порции, без COUNT и без загрузки позиций
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void cursorWalksWholeHistoryWithoutGapsOrDuplicates() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            OrderHistoryPage page = orderService.getUserOrders(user, cursor, 2);
+            for (OrderSummary order : page.getOrders()) {
+                seen.add(order.getId());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).hasSize(ORDERS).doesNotHaveDuplicates();
+        assertThat(seen.get(0)).isEqualTo(lastOrderId);
+    }
+
+    @Test
+    void orderDetailLoadsItemsAndBooksInOneQuery() {
+        Statistics statistics = statistics();
+
+        Order order = orderService.getOrderById(lastOrderId);
+        List<String> titles = new ArrayList<>();
+        for (OrderItem item : order.getItems()) {
+            titles.add(item.getBook().getTitle());
+        }
+
+        assertThat(titles).hasSize(books.size());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private Statistics statistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.bookstore.service;
+
+import com.example.bookstore.BookstoreApplication;
+import com.example.bookstore.dto.CartItem;
+import com.example.bookstore.model.Book;
+import com.example.bookstore.model.Order;
+import com.example.bookstore.model.User;
+import com.example.bookstore.repository.BookRepository;
+import com.example.bookstore.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Оформление заказа на одну и ту же книгу из нескольких потоков:
+ * списание в БД (UPDATE строки book в каждой транзакции) против резервирования в памяти
+ *
+ * Нужна та же БД, что и для тестов. Не запускается в mvn test. Запуск после mvn test-compile:
+ * java -cp target/test-classes:target/classes:<classpath тестов> com.example.bookstore.service.OrderServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class OrderServiceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean reservations;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private User user;
+    private Book book;
+    private List<CartItem> cart;
+
+    @Setup
+    public void setUp() {
+        SpringApplication application = new SpringApplication(BookstoreApplication.class);
+        application.setWebApplicationType(WebApplicationType.NONE);
+        context = application.run("--bookstore.inventory.reservations.enabled=" + reservations);
+        orderService = context.getBean(OrderService.class);
+
+        String suffix = String.valueOf(System.nanoTime());
+        user = context.getBean(UserRepository.class).save(User.builder()
+                .username("bench-" + suffix)
+                .password("-")
+                .email("bench-" + suffix + "@example.com")
+                .build());
+        // Остатка хватает на все итерации — измеряется оформление, а не отказ
+        book = context.getBean(BookRepository.class).save(Book.builder()
+                .title("Bench " + suffix)
+                .author("Bench")
+                .genre("Bench")
+                .price(new BigDecimal("10.00"))
+                .stock(Integer.MAX_VALUE)
+                .build());
+        cart = List.of(CartItem.builder()
+                .bookId(book.getId())
+                .title(book.getTitle())
+                .author(book.getAuthor())
+                .price(book.getPrice())
+                .quantity(1)
+                .build());
+    }
+
+    @TearDown
+    public void tearDown() {
+        // Заказы и позиции удаляются каскадом вместе с пользователем
+        context.getBean(UserRepository.class).deleteById(user.getId());
+        context.getBean(BookRepository.class).deleteById(book.getId());
+        context.close();
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        return orderService.createOrder(user, cart, "addr", "phone", "mail@example.com");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OrderServiceBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bookstore.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Параллельное оформление заказов со списанием остатка в БД (UPDATE ... WHERE stock >= ?)
+ */
+@SpringBootTest
+class OrderServiceConcurrencyTest extends AbstractConcurrentCheckoutTest {
+}
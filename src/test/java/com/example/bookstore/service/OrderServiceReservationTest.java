@@ -0,0 +1,49 @@
+package com.example.bookstore.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельное оформление заказов с резервированием остатков в памяти
+ * (время в сравнении со списанием в БД — OrderServiceBenchmark)
+ */
+@SpringBootTest(properties = "bookstore.inventory.reservations.enabled=true")
+class OrderServiceReservationTest extends AbstractConcurrentCheckoutTest {
+
+    @Autowired
+    private StockReservationService reservationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    protected void assertSoldOut() {
+        // Продажи записаны вместе с заказами: остаток в БД с учетом долей уже нулевой, до сброса
+        assertThat(remaining(first.getId())).isZero();
+        assertThat(remaining(second.getId())).isZero();
+
+        reservationService.reconcile();
+
+        super.assertSoldOut();
+        assertThat(unflushedSales(first.getId())).isZero();
+        assertThat(allotted(first.getId())).isZero();
+        assertThat(allotted(second.getId())).isZero();
+    }
+
+    private long remaining(Long bookId) {
+        return bookRepository.findById(bookId).orElseThrow().getStock() + allotted(bookId) - unflushedSales(bookId);
+    }
+
+    private long unflushedSales(Long bookId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity), 0) FROM stock_sale WHERE book_id = ?", Long.class, bookId);
+    }
+
+    private long allotted(Long bookId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(units), 0) FROM stock_allotment WHERE book_id = ?", Long.class, bookId);
+    }
+}
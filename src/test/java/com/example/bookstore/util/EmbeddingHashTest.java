@@ -0,0 +1,24 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmbeddingHashTest {
+
+    @Test
+    void sameTextAndModelGiveSameHash() {
+        String hash = EmbeddingHash.of("Война и мир Толстой", "model-a");
+
+        assertThat(hash).hasSize(64).matches("[0-9a-f]+");
+        assertThat(EmbeddingHash.of("Война и мир Толстой", "model-a")).isEqualTo(hash);
+    }
+
+    @Test
+    void textOrModelChangeHash() {
+        String hash = EmbeddingHash.of("Война и мир", "model-a");
+
+        assertThat(EmbeddingHash.of("Война и мир.", "model-a")).isNotEqualTo(hash);
+        assertThat(EmbeddingHash.of("Война и мир", "model-b")).isNotEqualTo(hash);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LruTtlCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsedEntry() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(2, 1, TimeUnit.HOURS);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+        cache.put("c", 3);
+
+        assertThat(cache.get("a")).isEqualTo(1);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isEqualTo(3);
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 100, TimeUnit.NANOSECONDS, now::get);
+        cache.put("a", 1);
+
+        now.set(99);
+        assertThat(cache.get("a")).isEqualTo(1);
+
+        now.set(100);
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void invalidatesMatchingKeys() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 1, TimeUnit.HOURS);
+        cache.put("1:5", 1);
+        cache.put("1:10", 2);
+        cache.put("2:5", 3);
+
+        cache.invalidateIf(key -> key.startsWith("1:"));
+
+        assertThat(cache.get("1:5")).isNull();
+        assertThat(cache.get("1:10")).isNull();
+        assertThat(cache.get("2:5")).isEqualTo(3);
+    }
+
+    @Test
+    void countsHitsAndMissesAndSkipsNullValues() {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 1, TimeUnit.HOURS);
+
+        assertThat(cache.getOrLoad("a", key -> 1)).isEqualTo(1);
+        assertThat(cache.getOrLoad("a", key -> 2)).isEqualTo(1);
+        assertThat(cache.getOrLoad("b", key -> null)).isNull();
+
+        LruTtlCache.Stats stats = cache.stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(2);
+        assertThat(stats.size()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRequestsForSameKeyLoadOnce() throws Exception {
+        LruTtlCache<String, Integer> cache = new LruTtlCache<>(10, 1, TimeUnit.HOURS);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.getOrLoad("q", key -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(release);
+                return 42;
+            })));
+            loaderStarted.await();
+
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.getOrLoad("q", key -> {
+                    loads.incrementAndGet();
+                    return -1;
+                })));
+            }
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+            }
+            assertThat(loads.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
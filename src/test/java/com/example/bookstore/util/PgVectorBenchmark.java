@@ -0,0 +1,79 @@
+package com.example.bookstore.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование и разбор vector: текстовая форма "[...]" против бинарного send/recv
+ *
+ * Не запускается в mvn test. Запуск после mvn test-compile:
+ * java -cp target/test-classes:target/classes:<classpath тестов> com.example.bookstore.util.PgVectorBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PgVectorBenchmark {
+
+    @Param({"384", "1536"})
+    public int dimension;
+
+    private PgVector vector;
+    private String text;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() {
+        vector = new PgVector(VectorUtils.createRandomVector(dimension, 11));
+        text = vector.getValue();
+        binary = new byte[vector.lengthInBytes()];
+        vector.toBytes(binary, 0);
+    }
+
+    @Benchmark
+    public String encodeText() {
+        return vector.getValue();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        byte[] bytes = new byte[vector.lengthInBytes()];
+        vector.toBytes(bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public float[] decodeText() throws SQLException {
+        return PgVector.parse(text);
+    }
+
+    @Benchmark
+    public float[] decodeBinary() throws SQLException {
+        PgVector decoded = new PgVector();
+        decoded.setByteValue(binary, 0);
+        return decoded.toArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PgVectorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.util.PGobject;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PgVectorTest {
+
+    @Test
+    void binaryRoundTrip() throws SQLException {
+        float[] original = VectorUtils.createRandomVector(1536, 7);
+        original[0] = -0.0f;
+        original[1] = Float.MIN_VALUE;
+
+        PgVector source = new PgVector(original);
+        byte[] bytes = new byte[source.lengthInBytes() + 3];
+        source.toBytes(bytes, 3);
+
+        PgVector target = new PgVector();
+        target.setByteValue(bytes, 3);
+
+        assertThat(source.lengthInBytes()).isEqualTo(4 + 1536 * 4);
+        assertThat(target.toArray()).containsExactly(original);
+    }
+
+    @Test
+    void binaryHeaderIsBigEndianDimension() {
+        byte[] bytes = new byte[4 + 300 * 4];
+        new PgVector(new float[300]).toBytes(bytes, 0);
+
+        assertThat(((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF)).isEqualTo(300);
+        assertThat(bytes[2]).isZero();
+        assertThat(bytes[3]).isZero();
+    }
+
+    @Test
+    void textRoundTrip() throws SQLException {
+        float[] original = VectorUtils.createRandomVector(64, 11);
+
+        PgVector target = new PgVector();
+        target.setValue(new PgVector(original).getValue());
+
+        assertThat(target.toArray()).containsExactly(original);
+    }
+
+    @Test
+    void toArrayAcceptsPlainPgObject() throws SQLException {
+        PGobject object = new PGobject();
+        object.setType("vector");
+        object.setValue("[1, -2.5,3e-2]");
+
+        assertThat(PgVector.toArray(object)).containsExactly(1.0f, -2.5f, 0.03f);
+        assertThat(PgVector.toArray(null)).isNull();
+        assertThat(PgVector.toArray("[]")).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedBinaryValue() {
+        byte[] bytes = new byte[4 + 2 * 4];
+        new PgVector(new float[]{1.0f, 2.0f}).toBytes(bytes, 0);
+        bytes[1] = 3;
+
+        assertThatThrownBy(() -> new PgVector().setByteValue(bytes, 0))
+                .isInstanceOf(SQLException.class);
+    }
+}
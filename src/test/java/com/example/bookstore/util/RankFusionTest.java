@@ -0,0 +1,47 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RankFusionTest {
+
+    @Test
+    void itemsFoundByBothListsRankFirst() {
+        List<Long> vector = List.of(1L, 2L, 3L, 4L);
+        List<Long> lexical = List.of(5L, 3L, 6L);
+
+        List<Long> fused = RankFusion.fuse(List.of(vector, lexical), RankFusion.DEFAULT_K, 10);
+
+        assertThat(fused.get(0)).isEqualTo(3L);
+        assertThat(fused).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L);
+    }
+
+    @Test
+    void weightsShiftTheBalance() {
+        List<Long> vector = List.of(1L, 2L);
+        List<Long> lexical = List.of(3L, 4L);
+
+        assertThat(RankFusion.fuse(List.of(vector, lexical), new double[]{1.0, 2.0}, 60, 2))
+                .containsExactly(3L, 4L);
+        assertThat(RankFusion.fuse(List.of(vector, lexical), new double[]{2.0, 1.0}, 60, 2))
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void tiesKeepFirstAppearanceAndDuplicatesCountOnce() {
+        List<Long> first = List.of(1L, 1L, 2L);
+        List<Long> second = List.of(2L, 1L);
+
+        assertThat(RankFusion.fuse(List.of(first, second), 60, 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void rejectsMismatchedWeights() {
+        assertThatThrownBy(() -> RankFusion.fuse(List.of(List.of(1L)), new double[]{1, 1}, 60, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RetryPolicyTest {
+
+    @Test
+    void retriesConcurrencyFailuresUntilSuccess() {
+        RetryPolicy policy = new RetryPolicy(3, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = policy.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new CannotAcquireLockException("lock timeout");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(2, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new CannotAcquireLockException("deadlock");
+        })).isInstanceOf(CannotAcquireLockException.class);
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRetryBusinessErrors() {
+        RetryPolicy policy = new RetryPolicy(5, 0);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new RuntimeException("Недостаточно товара на складе");
+        })).hasMessageContaining("Недостаточно");
+        assertThat(calls.get()).isEqualTo(1);
+    }
+}
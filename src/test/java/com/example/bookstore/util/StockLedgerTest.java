@@ -0,0 +1,159 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockLedgerTest {
+
+    @Test
+    void reservesAllLinesOrNone() {
+        StockLedger ledger = new StockLedger(1, TimeUnit.HOURS);
+        ledger.add(1L, 5);
+        ledger.add(2L, 1);
+
+        assertThat(ledger.tryReserve("a", quantities(1L, 3, 2L, 2))).isEqualTo(2L);
+        assertThat(ledger.available(1L)).isEqualTo(5);
+        assertThat(ledger.available(2L)).isEqualTo(1);
+
+        assertThat(ledger.tryReserve("b", quantities(1L, 3, 2L, 1))).isNull();
+        assertThat(ledger.available(1L)).isEqualTo(2);
+        assertThat(ledger.available(2L)).isZero();
+    }
+
+    @Test
+    void holdIsConfirmedOnce() {
+        StockLedger ledger = new StockLedger(1, TimeUnit.HOURS);
+        ledger.add(1L, 10);
+        ledger.tryReserve("a", quantities(1L, 4));
+
+        assertThat(ledger.confirm("a")).isTrue();
+        assertThat(ledger.confirm("a")).isFalse();
+        assertThat(ledger.available(1L)).isEqualTo(6);
+    }
+
+    @Test
+    void untrackedBookCannotBeReservedOrConfirmed() {
+        StockLedger ledger = new StockLedger(1, TimeUnit.HOURS);
+        ledger.add(1L, 10);
+        ledger.add(2L, 10);
+
+        assertThat(ledger.tryReserve("a", quantities(1L, 1, 3L, 1))).isEqualTo(3L);
+        assertThat(ledger.available(1L)).isEqualTo(10);
+
+        // Долю книги 2 забрал другой экземпляр, пока резерв ждал подтверждения
+        ledger.tryReserve("b", quantities(1L, 2, 2L, 2));
+        ledger.untrack(2L);
+
+        assertThat(ledger.confirm("b")).isFalse();
+        assertThat(ledger.available(1L)).isEqualTo(10);
+    }
+
+    @Test
+    void expiredHoldsReturnStock() {
+        AtomicLong now = new AtomicLong();
+        StockLedger ledger = new StockLedger(100, TimeUnit.NANOSECONDS, now::get);
+        ledger.add(1L, 3);
+        ledger.tryReserve("a", quantities(1L, 3));
+
+        now.set(99);
+        assertThat(ledger.expire()).isZero();
+        now.set(100);
+        assertThat(ledger.expire()).isEqualTo(1);
+
+        assertThat(ledger.available(1L)).isEqualTo(3);
+        assertThat(ledger.confirm("a")).isFalse();
+    }
+
+    @Test
+    void cancelledSaleReturnsStock() {
+        StockLedger ledger = new StockLedger(1, TimeUnit.HOURS);
+        ledger.add(1L, 10);
+        ledger.tryReserve("a", quantities(1L, 4));
+        ledger.confirm("a");
+
+        // Транзакция заказа откатилась вместе с записью о продаже
+        ledger.cancelSale(quantities(1L, 4));
+
+        assertThat(ledger.available(1L)).isEqualTo(10);
+    }
+
+    @Test
+    void takeAllLeavesHeldStockReserved() {
+        StockLedger ledger = new StockLedger(1, TimeUnit.HOURS);
+        ledger.add(1L, 10);
+        ledger.tryReserve("a", quantities(1L, 4));
+
+        assertThat(ledger.takeAll(1L)).isEqualTo(6);
+        assertThat(ledger.available(1L)).isZero();
+
+        ledger.release("a");
+        assertThat(ledger.available(1L)).isEqualTo(4);
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        int stock = 1000;
+        int threads = 16;
+        int attemptsPerThread = 200;
+
+        StockLedger ledger = new StockLedger(1, TimeUnit.HOURS);
+        ledger.add(1L, stock);
+        ledger.add(2L, stock);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    String holdId = thread + "-" + i;
+                    if (ledger.tryReserve(holdId, quantities(1L, 1, 2L, 1)) == null) {
+                        // Часть резервов отменяется — товар должен вернуться в продажу
+                        if (i % 4 == 0) {
+                            ledger.release(holdId);
+                        } else {
+                            ledger.confirm(holdId);
+                            succeeded.incrementAndGet();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(succeeded.get()).isEqualTo(stock);
+        assertThat(ledger.available(1L)).isZero();
+        assertThat(ledger.available(2L)).isZero();
+        assertThat(ledger.activeHolds()).isZero();
+    }
+
+    private static TreeMap<Long, Integer> quantities(Object... pairs) {
+        TreeMap<Long, Integer> result = new TreeMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.put((Long) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return result;
+    }
+}
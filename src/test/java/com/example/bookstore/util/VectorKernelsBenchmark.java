@@ -0,0 +1,77 @@
+package com.example.bookstore.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время cosine/dot на типичных размерностях эмбеддингов: скалярное ядро против SIMD
+ *
+ * Не запускается в mvn test. Запуск после mvn test-compile:
+ * java --add-modules jdk.incubator.vector -cp target/test-classes:target/classes:<classpath тестов>
+ *      com.example.bookstore.util.VectorKernelsBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorKernelsBenchmark {
+
+    @Param({"128", "384", "768", "1536"})
+    public int dimension;
+
+    @Param({"scalar", "simd"})
+    public String kernelName;
+
+    private VectorKernels.Kernel kernel;
+    private float[] a;
+    private float[] b;
+
+    @Setup
+    public void setUp() {
+        kernel = "simd".equals(kernelName) ? new SimdVectorKernels() : new ScalarVectorKernels();
+        Random random = new Random(dimension);
+        a = randomVector(random, dimension);
+        b = randomVector(random, dimension);
+    }
+
+    @Benchmark
+    public double cosine() {
+        return kernel.cosine(a, b);
+    }
+
+    @Benchmark
+    public float dot() {
+        return kernel.dot(a, b);
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VectorKernelsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
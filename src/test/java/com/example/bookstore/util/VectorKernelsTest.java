@@ -0,0 +1,67 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * SIMD-ядра совпадают со скалярными на размерностях с хвостом и без
+ * Скорость ядер измеряет VectorKernelsBenchmark (JMH)
+ */
+class VectorKernelsTest {
+
+    private static final int[] DIMENSIONS = {1, 7, 17, 128, 384, 768, 1536, 1539};
+
+    private final ScalarVectorKernels scalar = new ScalarVectorKernels();
+    private VectorKernels.Kernel simd;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "нужен --add-modules jdk.incubator.vector");
+        simd = new SimdVectorKernels();
+    }
+
+    @Test
+    void simdMatchesScalar() {
+        for (int dimension : DIMENSIONS) {
+            Random random = new Random(dimension);
+            float[] a = randomVector(random, dimension);
+            float[] b = randomVector(random, dimension);
+
+            assertThat(simd.dot(a, b)).isCloseTo(scalar.dot(a, b), within(1e-3f));
+            assertThat(simd.cosine(a, b)).isCloseTo(scalar.cosine(a, b), within(1e-5));
+            assertThat(simd.squareDistance(a, b)).isCloseTo(scalar.squareDistance(a, b), within(1e-2f));
+            assertThat(simd.sumOfSquares(a)).isCloseTo(scalar.sumOfSquares(a), within(1e-2f));
+
+            float[] scaledSimd = new float[dimension];
+            float[] scaledScalar = new float[dimension];
+            simd.scale(a, 0.5f, scaledSimd);
+            scalar.scale(a, 0.5f, scaledScalar);
+            assertThat(scaledSimd).containsExactly(scaledScalar);
+        }
+    }
+
+    @Test
+    void facadeHandlesEdgeCases() {
+        assertThat(VectorKernels.cosineSimilarity(new float[]{1, 0}, new float[]{1})).isZero();
+        assertThat(VectorKernels.cosineSimilarity(new float[3], new float[3])).isZero();
+        assertThat(VectorKernels.euclideanDistance(null, new float[1])).isEqualTo(Double.MAX_VALUE);
+        assertThat(VectorKernels.normalize(new float[]{3, 4})).containsExactly(0.6f, 0.8f);
+        assertThat(VectorKernels.cosineSimilarity(new float[]{1, 0}, new float[]{1, 1}))
+                .isCloseTo(Math.sqrt(0.5), within(1e-6));
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
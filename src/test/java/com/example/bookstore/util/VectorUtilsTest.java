@@ -0,0 +1,48 @@
+package com.example.bookstore.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class VectorUtilsTest {
+
+    @Test
+    void fitDimensionTruncatesAndRenormalizes() {
+        float[] embedding = VectorUtils.createRandomVector(1536, 1);
+
+        float[] truncated = VectorUtils.fitDimension(embedding, 768);
+
+        assertThat(truncated).hasSize(768);
+        assertThat(VectorUtils.cosineSimilarity(truncated, truncated)).isCloseTo(1.0, within(1e-6));
+        double norm = 0;
+        for (float v : truncated) {
+            norm += v * v;
+        }
+        assertThat(norm).isCloseTo(1.0, within(1e-5));
+        // Направление первых координат сохраняется
+        assertThat(truncated[0] / truncated[1]).isCloseTo(embedding[0] / embedding[1], within(1e-4f));
+    }
+
+    @Test
+    void fitDimensionPadsWithZerosWithoutChangingSimilarity() {
+        float[] a = VectorUtils.createRandomVector(384, 1);
+        float[] b = VectorUtils.createRandomVector(384, 2);
+
+        float[] paddedA = VectorUtils.fitDimension(a, 1536);
+        float[] paddedB = VectorUtils.fitDimension(b, 1536);
+
+        assertThat(paddedA).hasSize(1536);
+        assertThat(paddedA[1000]).isZero();
+        assertThat(VectorUtils.cosineSimilarity(paddedA, paddedB))
+                .isCloseTo(VectorUtils.cosineSimilarity(a, b), within(1e-6));
+    }
+
+    @Test
+    void fitDimensionKeepsMatchingVectorAsIs() {
+        float[] embedding = VectorUtils.createRandomVector(768, 3);
+
+        assertThat(VectorUtils.fitDimension(embedding, 768)).isSameAs(embedding);
+        assertThat(VectorUtils.fitDimension(null, 4)).containsExactly(0, 0, 0, 0);
+    }
+}
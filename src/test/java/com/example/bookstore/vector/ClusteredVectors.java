@@ -0,0 +1,36 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorUtils;
+
+import java.util.SplittableRandom;
+
+/**
+ * Векторы, сгруппированные вокруг центров, как эмбеддинги книг одной тематики
+ */
+final class ClusteredVectors {
+
+    private final int dimension;
+    private final float[][] centers;
+    private final SplittableRandom random;
+
+    ClusteredVectors(int dimension, int clusters, long seed) {
+        this.dimension = dimension;
+        this.centers = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            centers[c] = VectorUtils.createRandomVector(dimension, c);
+        }
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Вектор рядом со случайным центром
+     */
+    float[] next() {
+        float[] center = centers[random.nextInt(centers.length)];
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = center[i] + (float) (random.nextGaussian() * 0.05);
+        }
+        return vector;
+    }
+}
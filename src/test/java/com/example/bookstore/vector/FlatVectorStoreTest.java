@@ -0,0 +1,97 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlatVectorStoreTest {
+
+    private static final int DIMENSION = 64;
+    private static final int BOOKS = 5000;
+    private static final int K = 10;
+
+    @Test
+    void sequentialAndParallelScansMatchBruteForce() {
+        float[][] vectors = new float[BOOKS][];
+        FlatVectorStore sequential = new FlatVectorStore(DIMENSION, Integer.MAX_VALUE);
+        // Порог ниже размера — поиск идет блоками в общем пуле
+        FlatVectorStore parallel = new FlatVectorStore(DIMENSION, 1000);
+        for (int i = 0; i < BOOKS; i++) {
+            vectors[i] = VectorUtils.createRandomVector(DIMENSION, i);
+            sequential.upsert(i, vectors[i]);
+            parallel.upsert(i, vectors[i]);
+        }
+
+        for (int q = 0; q < 20; q++) {
+            float[] query = VectorUtils.createRandomVector(DIMENSION, 1_000_000 + q);
+            List<Long> expected = bruteForce(vectors, query, K);
+
+            assertThat(sequential.search(query, K)).containsExactlyElementsOf(expected);
+            assertThat(parallel.search(query, K)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void removeKeepsMatrixDenseAndIdsConsistent() {
+        FlatVectorStore store = new FlatVectorStore(DIMENSION);
+        for (int i = 0; i < 100; i++) {
+            store.upsert(i, VectorUtils.createRandomVector(DIMENSION, i));
+        }
+
+        float[] last = VectorUtils.createRandomVector(DIMENSION, 99);
+        store.remove(3);
+        store.remove(3);
+
+        assertThat(store.size()).isEqualTo(99);
+        assertThat(store.get(3)).isNull();
+        // Последний вектор переехал на место удаленного, но по-прежнему находится по своему id
+        assertThat(store.get(99)).containsExactly(VectorUtils.normalize(last));
+        assertThat(store.search(last, 1)).containsExactly(99L);
+        assertThat(store.search(last, 200)).hasSize(99).doesNotContain(3L);
+    }
+
+    @Test
+    void upsertReplacesInPlace() {
+        FlatVectorStore store = new FlatVectorStore(DIMENSION);
+        for (int i = 0; i < 50; i++) {
+            store.upsert(i, VectorUtils.createRandomVector(DIMENSION, i));
+        }
+
+        float[] replacement = VectorUtils.createRandomVector(DIMENSION, 9999);
+        store.upsert(7, replacement);
+
+        assertThat(store.size()).isEqualTo(50);
+        assertThat(store.search(replacement, 1)).containsExactly(7L);
+        assertThat(store.get(7)).containsExactly(VectorUtils.normalize(replacement));
+    }
+
+    @Test
+    void emptyStoreReturnsNothing() {
+        FlatVectorStore store = new FlatVectorStore(DIMENSION);
+
+        assertThat(store.search(new float[DIMENSION], 5)).isEmpty();
+        assertThat(store.search(new float[DIMENSION - 1], 5)).isEmpty();
+    }
+
+    private static List<Long> bruteForce(float[][] vectors, float[] query, int k) {
+        NodeHeap top = NodeHeap.minHeap(k + 1);
+        float[] normalized = VectorUtils.normalize(query);
+        for (int i = 0; i < vectors.length; i++) {
+            float[] vector = VectorUtils.normalize(vectors[i]);
+            float dot = 0.0f;
+            for (int d = 0; d < vector.length; d++) {
+                dot += vector[d] * normalized[d];
+            }
+            top.offer(i, dot, k);
+        }
+        List<Long> ids = new ArrayList<>(k);
+        for (int ordinal : top.drainBestFirst()) {
+            ids.add((long) ordinal);
+        }
+        return ids;
+    }
+}
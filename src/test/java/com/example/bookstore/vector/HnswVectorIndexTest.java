@@ -0,0 +1,105 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswVectorIndexTest {
+
+    private static final int DIMENSION = 64;
+    private static final int BOOKS = 3000;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    @Test
+    void recallAtKAgainstBruteForce() {
+        float[][] vectors = new float[BOOKS][];
+        HnswVectorIndex index = new HnswVectorIndex(DIMENSION, 16, 100, 100);
+        for (int i = 0; i < BOOKS; i++) {
+            vectors[i] = VectorUtils.createRandomVector(DIMENSION, i);
+            index.upsert(i, vectors[i]);
+        }
+
+        double recall = 0.0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = VectorUtils.createRandomVector(DIMENSION, 1_000_000 + q);
+            Set<Long> expected = bruteForce(vectors, query, K);
+            List<Long> actual = index.search(query, K);
+
+            assertThat(actual).hasSize(K);
+            recall += actual.stream().filter(expected::contains).count() / (double) K;
+        }
+
+        assertThat(recall / QUERIES).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void upsertReplacesAndRemoveHidesVector() {
+        HnswVectorIndex index = new HnswVectorIndex(DIMENSION, 8, 50, 50);
+        for (int i = 0; i < 200; i++) {
+            index.upsert(i, VectorUtils.createRandomVector(DIMENSION, i));
+        }
+
+        float[] replacement = VectorUtils.createRandomVector(DIMENSION, 9999);
+        index.upsert(5, replacement);
+        assertThat(index.size()).isEqualTo(200);
+        assertThat(index.search(replacement, 1)).containsExactly(5L);
+        assertThat(index.get(5)).containsExactly(VectorUtils.normalize(replacement));
+
+        index.remove(5);
+        assertThat(index.size()).isEqualTo(199);
+        assertThat(index.get(5)).isNull();
+        assertThat(index.search(replacement, 10)).doesNotContain(5L).hasSize(10);
+    }
+
+    @Test
+    void repeatedReindexDoesNotAccumulateVectors() throws Exception {
+        HnswVectorIndex index = new HnswVectorIndex(DIMENSION, 8, 50, 50);
+        for (int i = 0; i < 1000; i++) {
+            index.upsert(i, VectorUtils.createRandomVector(DIMENSION, i));
+        }
+        // Те же векторы — без изменений
+        for (int i = 0; i < 1000; i++) {
+            index.upsert(i, VectorUtils.createRandomVector(DIMENSION, i));
+        }
+        assertThat(index.storedVectors()).isEqualTo(1000);
+
+        float[] last = null;
+        for (int round = 1; round <= 5; round++) {
+            for (int i = 0; i < 1000; i++) {
+                last = VectorUtils.createRandomVector(DIMENSION, round * 1000 + i);
+                index.upsert(i, last);
+            }
+        }
+
+        // Перестройка идет в фоне, поиск и запись во время нее не блокируются
+        index.awaitCompaction();
+        assertThat(index.size()).isEqualTo(1000);
+        assertThat(index.storedVectors()).isLessThanOrEqualTo(1000 + 1024);
+        assertThat(index.search(last, 1)).containsExactly(999L);
+    }
+
+    @Test
+    void emptyIndexReturnsNothing() {
+        HnswVectorIndex index = new HnswVectorIndex(DIMENSION, 16, 64, 40);
+
+        assertThat(index.search(new float[DIMENSION], 5)).isEmpty();
+    }
+
+    private static Set<Long> bruteForce(float[][] vectors, float[] query, int k) {
+        NodeHeap top = NodeHeap.minHeap(k + 1);
+        for (int i = 0; i < vectors.length; i++) {
+            top.offer(i, (float) VectorUtils.cosineSimilarity(vectors[i], query), k);
+        }
+        Set<Long> ids = new HashSet<>();
+        for (int ordinal : top.drainBestFirst()) {
+            ids.add((long) ordinal);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.bookstore.vector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Задержка поиска по сжатым векторам в зависимости от квантователя и переранжирования
+ * Полнота recall@10 и память на миллион книг выводятся один раз при подготовке каждого варианта
+ *
+ * Не запускается в mvn test. Запуск после mvn test-compile:
+ * java --add-modules jdk.incubator.vector -cp target/test-classes:target/classes:<classpath тестов>
+ *      com.example.bookstore.vector.QuantizedVectorIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class QuantizedVectorIndexBenchmark {
+
+    private static final int DIMENSION = 128;
+    private static final int BOOKS = 10_000;
+    private static final int CLUSTERS = 64;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    @Param({"int8", "pq32"})
+    public String quantizer;
+
+    @Param({"1", "4", "10"})
+    public int rerankFactor;
+
+    private final Map<Long, float[]> vectors = new HashMap<>();
+    private final float[][] queries = new float[QUERIES][];
+    private QuantizedVectorIndex index;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ClusteredVectors generator = new ClusteredVectors(DIMENSION, CLUSTERS, 7);
+        FlatVectorStore exact = new FlatVectorStore(DIMENSION);
+        for (long id = 0; id < BOOKS; id++) {
+            float[] vector = generator.next();
+            vectors.put(id, vector);
+            exact.upsert(id, vector);
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = generator.next();
+        }
+
+        Function<List<float[]>, VectorQuantizer> trainer = "pq32".equals(quantizer)
+                ? sample -> ProductQuantizer.train(sample, DIMENSION, 32, 8, 42L)
+                : sample -> ScalarQuantizer.train(sample, DIMENSION);
+        index = new QuantizedVectorIndex(DIMENSION, trainer, 2000, rerankFactor, this::load);
+        vectors.forEach(index::upsert);
+
+        double recall = 0.0;
+        for (float[] query : queries) {
+            Set<Long> expected = new HashSet<>(exact.search(query, K));
+            recall += index.search(query, K).stream().filter(expected::contains).count() / (double) K;
+        }
+        System.out.printf("%n%s, переранжирование x%d: recall@%d=%.3f, %d МБ на млн книг (float32: %d МБ)%n",
+                quantizer, rerankFactor, K, recall / QUERIES,
+                index.allocatedBytes() / BOOKS, (long) DIMENSION * Float.BYTES);
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        float[] query = queries[next];
+        next = (next + 1) % QUERIES;
+        return index.search(query, K);
+    }
+
+    private Map<Long, float[]> load(List<Long> ids) {
+        Map<Long, float[]> result = new HashMap<>();
+        for (Long id : ids) {
+            result.put(id, vectors.get(id));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(QuantizedVectorIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.bookstore.vector;
+
+import com.example.bookstore.util.VectorUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Полнота recall@10 сжатого поиска относительно точного перебора
+ * (задержка и память на миллион книг — QuantizedVectorIndexBenchmark)
+ */
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 128;
+    private static final int BOOKS = 10_000;
+    private static final int CLUSTERS = 64;
+    private static final int QUERIES = 100;
+    private static final int K = 10;
+
+    private static final Map<Long, float[]> vectors = new HashMap<>();
+    private static final float[][] queries = new float[QUERIES][];
+    private static final FlatVectorStore exact = new FlatVectorStore(DIMENSION);
+
+    @BeforeAll
+    static void setUp() {
+        ClusteredVectors generator = new ClusteredVectors(DIMENSION, CLUSTERS, 7);
+        for (long id = 0; id < BOOKS; id++) {
+            float[] vector = generator.next();
+            vectors.put(id, vector);
+            exact.upsert(id, vector);
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = generator.next();
+        }
+    }
+
+    @Test
+    void int8WithRerankKeepsRecall() {
+        Function<List<float[]>, VectorQuantizer> int8 = sample -> ScalarQuantizer.train(sample, DIMENSION);
+
+        double withoutRerank = recall(int8, 1);
+        double withRerank = recall(int8, 4);
+
+        assertThat(withoutRerank).isGreaterThanOrEqualTo(0.9);
+        assertThat(withRerank).isGreaterThanOrEqualTo(0.98);
+    }
+
+    @Test
+    void productQuantizationNeedsWiderRerank() {
+        Function<List<float[]>, VectorQuantizer> pq = sample ->
+                ProductQuantizer.train(sample, DIMENSION, 32, 8, 42L);
+
+        double narrow = recall(pq, 4);
+        double wide = recall(pq, 10);
+
+        assertThat(wide).isGreaterThan(narrow).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void searchesExactlyUntilTrainingSampleIsCollected() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION,
+                sample -> ScalarQuantizer.train(sample, DIMENSION), 500, 4, this::load);
+        for (long id = 0; id < 499; id++) {
+            index.upsert(id, vectors.get(id));
+        }
+
+        // Меньше выборки: векторы хранятся как есть, поиск не обучает квантователь
+        assertThat(index.search(vectors.get(42L), 10)).isEqualTo(exactAmong(vectors.get(42L), 499, 10));
+        assertThat(index.get(1)).containsExactly(VectorUtils.normalize(vectors.get(1L)));
+        assertThat(index.allocatedBytes()).isZero();
+
+        index.upsert(499, vectors.get(499L));
+        assertThat(index.get(1)).isNull();
+        assertThat(index.allocatedBytes()).isPositive();
+        assertThat(index.search(vectors.get(42L), 1)).containsExactly(42L);
+
+        index.remove(42);
+        index.upsert(500, vectors.get(500L));
+        assertThat(index.size()).isEqualTo(500);
+        assertThat(index.search(vectors.get(42L), 5)).doesNotContain(42L).hasSize(5);
+        assertThat(index.search(vectors.get(500L), 1)).containsExactly(500L);
+    }
+
+    @Test
+    void upsertsAndSearchesDoNotWaitForTraining() throws Exception {
+        CountDownLatch trainingStarted = new CountDownLatch(1);
+        CountDownLatch finishTraining = new CountDownLatch(1);
+        QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, sample -> {
+            trainingStarted.countDown();
+            try {
+                finishTraining.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ScalarQuantizer.train(sample, DIMENSION);
+        }, QuantizedVectorIndex.MIN_TRAINING_SAMPLE, 4, this::load);
+        for (long id = 0; id < QuantizedVectorIndex.MIN_TRAINING_SAMPLE - 1; id++) {
+            index.upsert(id, vectors.get(id));
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> trainer = executor.submit(() ->
+                index.upsert(QuantizedVectorIndex.MIN_TRAINING_SAMPLE - 1, vectors.get(0L)));
+        assertThat(trainingStarted.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Квантователь обучается — индекс продолжает принимать векторы и искать точным перебором
+        index.upsert(1000, vectors.get(1000L));
+        index.remove(1);
+        assertThat(index.search(vectors.get(1000L), 1)).containsExactly(1000L);
+
+        finishTraining.countDown();
+        trainer.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(index.size()).isEqualTo(QuantizedVectorIndex.MIN_TRAINING_SAMPLE);
+        assertThat(index.get(0)).isNull();
+        assertThat(index.search(vectors.get(1000L), 1)).containsExactly(1000L);
+        assertThat(index.search(vectors.get(1L), 10)).doesNotContain(1L);
+    }
+
+    @Test
+    void trainingSampleHasFloor() {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION,
+                sample -> ScalarQuantizer.train(sample, DIMENSION), 10, 4, this::load);
+        for (long id = 0; id < QuantizedVectorIndex.MIN_TRAINING_SAMPLE - 1; id++) {
+            index.upsert(id, vectors.get(id));
+        }
+        assertThat(index.get(0)).isNotNull();
+
+        index.upsert(QuantizedVectorIndex.MIN_TRAINING_SAMPLE - 1, vectors.get(0L));
+        assertThat(index.get(0)).isNull();
+    }
+
+    private List<Long> exactAmong(float[] query, int books, int k) {
+        FlatVectorStore store = new FlatVectorStore(DIMENSION);
+        for (long id = 0; id < books; id++) {
+            store.upsert(id, vectors.get(id));
+        }
+        return store.search(query, k);
+    }
+
+    private double recall(Function<List<float[]>, VectorQuantizer> trainer, int rerankFactor) {
+        QuantizedVectorIndex index = new QuantizedVectorIndex(DIMENSION, trainer, 2000, rerankFactor, this::load);
+        vectors.forEach(index::upsert);
+
+        double recall = 0.0;
+        for (float[] query : queries) {
+            Set<Long> expected = new HashSet<>(exact.search(query, K));
+            recall += index.search(query, K).stream().filter(expected::contains).count() / (double) K;
+        }
+        return recall / QUERIES;
+    }
+
+    private Map<Long, float[]> load(List<Long> ids) {
+        Map<Long, float[]> result = new HashMap<>();
+        for (Long id : ids) {
+            result.put(id, vectors.get(id));
+        }
+        return result;
+    }
+}